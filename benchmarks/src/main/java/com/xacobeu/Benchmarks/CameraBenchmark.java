@@ -0,0 +1,48 @@
+package com.xacobeu.Benchmarks;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xacobeu.Camera3D;
+
+// Per-frame camera math, no GL context needed.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CameraBenchmark {
+
+    private Camera3D camera;
+    private double mouse = 0;
+
+    @Setup
+    public void setup() {
+        camera = new Camera3D(0, 0, 5);
+        camera.handleMouseInput(512, 512);
+    }
+
+    @Benchmark
+    public FloatBuffer createViewMatrix() {
+        return camera.createViewMatrix();
+    }
+
+    @Benchmark
+    public FloatBuffer mouseAndViewMatrix() {
+        mouse += 1;
+        camera.handleMouseInput(512 + Math.sin(mouse) * 50, 512 + Math.cos(mouse) * 50);
+        return camera.createViewMatrix();
+    }
+}
@@ -0,0 +1,64 @@
+package com.xacobeu.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Bodies.Planet3D;
+import com.xacobeu.Simulation.SpatialHashGrid;
+
+// Narrow phase (Planet3D.resolveCollision) and broad phase (SpatialHashGrid).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+    @Param({"1000", "10000"})
+    private int bodies;
+
+    private Planet3D first;
+    private Planet3D second;
+
+    private BodyStore store;
+    private SpatialHashGrid grid;
+
+    @Setup
+    public void setup() {
+        first = new Planet3D(0, 0, 0, 10, 5.97e24, Colors.GREEN, false);
+        second = new Planet3D(15, 0, 0, 10, 5.97e24, Colors.BLUE, false);
+        store = Scenes.randomCloud(bodies, true, 7);
+        grid = new SpatialHashGrid(true);
+    }
+
+    @Benchmark
+    public double resolveCollision() {
+        // Restore an approaching, overlapping pair so every call does the full resolve.
+        first.setPositionX(0);
+        first.setVelocityX(1);
+        second.setPositionX(15);
+        second.setVelocityX(-1);
+
+        first.resolveCollision(second);
+        return first.getVelocityX();
+    }
+
+    @Benchmark
+    public int broadPhase() {
+        return grid.findCandidatePairs(store);
+    }
+}
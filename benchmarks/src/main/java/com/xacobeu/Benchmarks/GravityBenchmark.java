@@ -0,0 +1,79 @@
+package com.xacobeu.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Gravity.BarnesHutSolver;
+import com.xacobeu.Gravity.DirectSumSolver;
+import com.xacobeu.Gravity.GravitySolver;
+import com.xacobeu.Gravity.ParallelDirectSumSolver;
+import com.xacobeu.Gravity.ParticleMeshSolver;
+import com.xacobeu.Gravity.VectorDirectSumSolver;
+import com.xacobeu.Simulation.SimulationEngine;
+
+// One force evaluation over a random 3D cloud. The fork enables the Vector
+// API so "simd" uses the vector kernel.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class GravityBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    private int bodies;
+
+    @Param({"direct", "parallel", "barnes-hut", "simd", "p3m"})
+    private String solverName;
+
+    private BodyStore store;
+    private GravitySolver solver;
+    private double[] ax;
+    private double[] ay;
+    private double[] az;
+
+    @Setup
+    public void setup() {
+        store = Scenes.randomCloud(bodies, true, 42);
+        ax = new double[bodies];
+        ay = new double[bodies];
+        az = new double[bodies];
+
+        switch (solverName) {
+            case "parallel":
+                solver = new ParallelDirectSumSolver();
+                break;
+            case "barnes-hut":
+                solver = new BarnesHutSolver(true, 0.5);
+                break;
+            case "simd":
+                solver = new VectorDirectSumSolver();
+                break;
+            case "p3m":
+                solver = new ParticleMeshSolver(true, ParticleMeshSolver.defaultGridSize(true), true, 0);
+                break;
+            default:
+                solver = new DirectSumSolver();
+        }
+    }
+
+    @Benchmark
+    public void computeAccelerations(Blackhole blackhole) {
+        solver.computeAccelerations(store, SimulationEngine.SCALED_G, ax, ay, az);
+        blackhole.consume(ax);
+    }
+}
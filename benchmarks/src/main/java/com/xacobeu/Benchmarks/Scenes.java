@@ -0,0 +1,25 @@
+package com.xacobeu.Benchmarks;
+
+import java.util.Random;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Reproducible random scenes shared by the benchmarks.
+final class Scenes {
+
+    private Scenes() {
+    }
+
+    // Gaussian cloud of n bodies around the origin, z = 0 when 2D.
+    static BodyStore randomCloud(int n, boolean threeDimensional, long seed) {
+        Random random = new Random(seed);
+        BodyStore store = new BodyStore(n);
+        for (int i = 0; i < n; i++) {
+            store.add(random.nextGaussian() * 1000, random.nextGaussian() * 1000,
+                    threeDimensional ? random.nextGaussian() * 1000 : 0,
+                    random.nextGaussian(), random.nextGaussian(), threeDimensional ? random.nextGaussian() : 0,
+                    5.97e24 * (0.5 + random.nextDouble()), 1 + random.nextDouble() * 4);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,57 @@
+package com.xacobeu.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+
+// Body.updatePosition including trail maintenance, with the trail already full
+// so every call also evicts the oldest point.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrailBenchmark {
+
+    private Planet2D planet2D;
+    private Planet3D planet3D;
+
+    @Setup
+    public void setup() {
+        planet2D = new Planet2D(0, 0, 10, 5.97e24, Colors.BLUE);
+        planet2D.setVelocityX(1);
+        planet3D = new Planet3D(0, 0, 0, 10, 5.97e24, Colors.GREEN, false);
+        planet3D.setVelocityX(1);
+
+        for (int i = 0; i < planet3D.getTrail().getCapacity(); i++) {
+            planet2D.updatePosition(1.0);
+            planet3D.updatePosition(1.0);
+        }
+    }
+
+    @Benchmark
+    public int updatePosition2D() {
+        planet2D.updatePosition(1.0);
+        return planet2D.getTrail().size();
+    }
+
+    @Benchmark
+    public int updatePosition3D() {
+        planet3D.updatePosition(1.0);
+        return planet3D.getTrail().size();
+    }
+}
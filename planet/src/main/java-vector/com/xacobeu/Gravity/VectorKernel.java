@@ -0,0 +1,74 @@
+package com.xacobeu.Gravity;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API version of VectorDirectSumSolver.ScalarKernel. Each row is
+// summed over SPECIES lanes of j at a time, the remaining tail lanes are
+// done in scalar code. Loaded reflectively, see VectorDirectSumSolver.
+class VectorKernel implements DirectSumKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void compute(double[] x, double[] y, double[] z, double[] mass, double[] radius, int n,
+            double g, double softening2, int[] active, int count,
+            double[] ax, double[] ay, double[] az) {
+        int bound = SPECIES.loopBound(n);
+
+        for (int k = 0; k < count; k++) {
+            int i = active == null ? k : active[k];
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            double ri = radius[i];
+
+            DoubleVector sumX = DoubleVector.zero(SPECIES);
+            DoubleVector sumY = DoubleVector.zero(SPECIES);
+            DoubleVector sumZ = DoubleVector.zero(SPECIES);
+
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j).sub(xi);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j).sub(yi);
+                DoubleVector dz = DoubleVector.fromArray(SPECIES, z, j).sub(zi);
+                DoubleVector d2 = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+
+                // Overlapping pairs, including i == j, drop out of the sum.
+                DoubleVector contact = DoubleVector.fromArray(SPECIES, radius, j).add(ri);
+                VectorMask<Double> apart = d2.compare(VectorOperators.GT, contact.mul(contact));
+
+                DoubleVector soft = d2.add(softening2);
+                DoubleVector s = DoubleVector.fromArray(SPECIES, mass, j).mul(g)
+                        .div(soft.mul(soft.sqrt()));
+                sumX = sumX.add(s.mul(dx), apart);
+                sumY = sumY.add(s.mul(dy), apart);
+                sumZ = sumZ.add(s.mul(dz), apart);
+            }
+
+            double tailX = 0;
+            double tailY = 0;
+            double tailZ = 0;
+            for (; j < n; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double dz = z[j] - zi;
+                double d2 = dx * dx + dy * dy + dz * dz;
+
+                double contact = ri + radius[j];
+                if (d2 <= contact * contact) continue;
+
+                double soft = d2 + softening2;
+                double s = g * mass[j] / (soft * Math.sqrt(soft));
+                tailX += s * dx;
+                tailY += s * dy;
+                tailZ += s * dz;
+            }
+
+            ax[i] = sumX.reduceLanes(VectorOperators.ADD) + tailX;
+            ay[i] = sumY.reduceLanes(VectorOperators.ADD) + tailY;
+            az[i] = sumZ.reduceLanes(VectorOperators.ADD) + tailZ;
+        }
+    }
+}
@@ -1,94 +1,118 @@
 package com.xacobeu.Bodies;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 abstract public class Body {
-    protected double positionX;
-    protected double positionY;
-    protected double positionZ;
-
-    protected double velocityX;
-    protected double velocityY;
-    protected double velocityZ;
-    protected double mass;
+    // State lives in a BodyStore; a body is a view over one index of it.
+    // New bodies get a private store until they are attached to a shared one.
+    protected BodyStore store;
+    protected int index;
 
-    protected Queue<double[]> trail = new LinkedList<>();
-    protected static final int TRAIL_LENGTH = 10000;
+    protected final TrailBuffer trail;
+    protected static final int TRAIL_LENGTH = 50000;
     protected static final int resolution = 100;
 
     public Body(double positionX, double positionY, double mass) {
-        this.positionX = positionX;
-        this.positionY = positionY;
-        this.mass = mass;
+        this(positionX, positionY, mass, 2);
+    }
+
+    protected Body(double positionX, double positionY, double mass, int trailDimensions) {
+        this.trail = new TrailBuffer(TRAIL_LENGTH, trailDimensions);
+        this.store = new BodyStore(1);
+        this.index = store.add(positionX, positionY, 0, 0, 0, 0, mass, 0);
+    }
+
+    // Creates a view over an existing index, e.g. one added by BodyStore.append.
+    protected Body(BodyStore store, int index, int trailDimensions) {
+        this.trail = new TrailBuffer(TRAIL_LENGTH, trailDimensions);
+        this.store = store;
+        this.index = index;
+        store.setView(index, this);
+    }
+
+    void bind(BodyStore store, int index) {
+        this.store = store;
+        this.index = index;
     }
 
-    public abstract void updatePosition();
+    public abstract void updatePosition(double dt);
+    public abstract void recordTrail();
     public abstract void drawTrail();
     public abstract void draw();
+    public abstract void drawAt(double x, double y, double z, double radius, int resolution);
     public abstract void resolveCollision(Body other);
 
+    public void drawAt(double x, double y, double z, double radius) {
+        drawAt(x, y, z, radius, resolution);
+    }
+
     // Accessor methods.
 
+    public BodyStore getStore() {
+        return store;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
     public double getMass() {
-        return mass;
+        return store.getMass()[index];
     }
 
     public double getPositionX() {
-        return positionX;
+        return store.getX()[index];
     }
 
     public double getPositionY() {
-        return positionY;
+        return store.getY()[index];
     }
 
     public double getPositionZ() {
-        return positionZ;
+        return store.getZ()[index];
     }
 
     public double getVelocityX() {
-        return velocityX;
+        return store.getVelocityX()[index];
     }
 
     public double getVelocityY() {
-        return velocityY;
+        return store.getVelocityY()[index];
     }
 
     public double getVelocityZ() {
-        return velocityZ;
+        return store.getVelocityZ()[index];
     }
 
     // Mutator methods.
-    
+
     public void setMass(double mass) {
-        this.mass = mass;
+        store.getMass()[index] = mass;
     }
 
     public void setPositionX(double positionX) {
-        this.positionX = positionX;
+        store.getX()[index] = positionX;
     }
 
     public void setPositionY(double positionY) {
-        this.positionY = positionY;
+        store.getY()[index] = positionY;
     }
 
     public void setPositionZ(double positionZ) {
-        this.positionZ = positionZ;
+        store.getZ()[index] = positionZ;
     }
 
     public void setVelocityX(double velocityX) {
-        this.velocityX = velocityX;
+        store.getVelocityX()[index] = velocityX;
     }
 
     public void setVelocityY(double velocityY) {
-        this.velocityY = velocityY;
+        store.getVelocityY()[index] = velocityY;
     }
 
     public void setVelocityZ(double velocityZ) {
-        this.velocityZ = velocityZ;
+        store.getVelocityZ()[index] = velocityZ;
     }
 
-    public Queue<double[]> getTrail() {
+    public TrailBuffer getTrail() {
         return trail;
     }
 }
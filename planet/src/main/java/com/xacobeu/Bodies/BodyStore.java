@@ -0,0 +1,202 @@
+package com.xacobeu.Bodies;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Structure-of-arrays storage for body state. Each Body is a view over one
+// index, so the physics loops can run over contiguous primitive arrays.
+public class BodyStore {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] x;
+    private double[] y;
+    private double[] z;
+
+    private double[] vx;
+    private double[] vy;
+    private double[] vz;
+
+    private double[] mass;
+    private double[] radius;
+
+    private Body[] views;
+    private int size = 0;
+
+    private final List<Body> viewList = new AbstractList<Body>() {
+        @Override
+        public Body get(int i) {
+            if (i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            return views[i];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    public BodyStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BodyStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        x = new double[capacity];
+        y = new double[capacity];
+        z = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        vz = new double[capacity];
+        mass = new double[capacity];
+        radius = new double[capacity];
+        views = new Body[capacity];
+    }
+
+    // Adds a body without a view and returns its index.
+    public int add(double px, double py, double pz, double pvx, double pvy, double pvz, double m, double r) {
+        ensureCapacity(size + 1);
+        int i = size++;
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        vz[i] = pvz;
+        mass[i] = m;
+        radius[i] = r;
+        views[i] = null;
+        return i;
+    }
+
+    // Adds count zeroed bodies without views and returns the first index, for
+    // bulk loaders that fill the arrays directly.
+    public int append(int count) {
+        ensureCapacity(size + count);
+        int first = size;
+        size += count;
+
+        Arrays.fill(x, first, size, 0);
+        Arrays.fill(y, first, size, 0);
+        Arrays.fill(z, first, size, 0);
+        Arrays.fill(vx, first, size, 0);
+        Arrays.fill(vy, first, size, 0);
+        Arrays.fill(vz, first, size, 0);
+        Arrays.fill(mass, first, size, 0);
+        Arrays.fill(radius, first, size, 0);
+        Arrays.fill(views, first, size, null);
+        return first;
+    }
+
+    void setView(int i, Body body) {
+        views[i] = body;
+    }
+
+    // Copies the body's current state into this store and rebinds it here.
+    public int attach(Body body) {
+        int i = add(body.getPositionX(), body.getPositionY(), body.getPositionZ(),
+                body.getVelocityX(), body.getVelocityY(), body.getVelocityZ(),
+                body.getMass(), body.store.radius[body.index]);
+        views[i] = body;
+        body.bind(this, i);
+        return i;
+    }
+
+    // Removes body i by moving the last body into its slot, so the arrays stay
+    // dense without shifting. The moved view is rebound to i and the removed
+    // one keeps its state in a private store. Reorders bodies, so callers
+    // removing several should go from the highest index down.
+    public void swapRemove(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+
+        Body removed = views[i];
+        if (removed != null) {
+            BodyStore detached = new BodyStore(1);
+            detached.add(x[i], y[i], z[i], vx[i], vy[i], vz[i], mass[i], radius[i]);
+            detached.views[0] = removed;
+            removed.bind(detached, 0);
+        }
+
+        int last = --size;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            z[i] = z[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            vz[i] = vz[last];
+            mass[i] = mass[last];
+            radius[i] = radius[last];
+            views[i] = views[last];
+            if (views[i] != null) views[i].bind(this, i);
+        }
+        views[last] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(views, 0, size, null);
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= x.length) return;
+
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        z = Arrays.copyOf(z, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        vz = Arrays.copyOf(vz, newCapacity);
+        mass = Arrays.copyOf(mass, newCapacity);
+        radius = Arrays.copyOf(radius, newCapacity);
+        views = Arrays.copyOf(views, newCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Body getView(int i) {
+        return views[i];
+    }
+
+    public List<Body> getViews() {
+        return viewList;
+    }
+
+    // Array accessors. Arrays are replaced when the store grows, so callers
+    // should fetch them again after adding bodies.
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public double[] getVelocityX() {
+        return vx;
+    }
+
+    public double[] getVelocityY() {
+        return vy;
+    }
+
+    public double[] getVelocityZ() {
+        return vz;
+    }
+
+    public double[] getMass() {
+        return mass;
+    }
+
+    public double[] getRadius() {
+        return radius;
+    }
+}
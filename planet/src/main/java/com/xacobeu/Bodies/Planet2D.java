@@ -3,17 +3,33 @@ package com.xacobeu.Bodies;
 import static org.lwjgl.opengl.GL11.*;
 
 import com.xacobeu.Colors;
+import com.xacobeu.Rendering.DiscMesh;
 
 public class Planet2D extends Body {
 
-    protected double radius;
     protected float[] color = {1.0f, 0.0f, 0.0f, 1.0f};
 
     public Planet2D(double positionX, double positionY, double radius, double mass, float[] color) {
-        super(positionX, positionY, mass);
+        this(positionX, positionY, radius, mass, color, 2);
+    }
+
+    protected Planet2D(double positionX, double positionY, double radius, double mass, float[] color, int trailDimensions) {
+        super(positionX, positionY, mass, trailDimensions);
 
-        this.radius = radius;
+        setRadius(radius);
+        setColor(color);
+    }
+
+    public Planet2D(BodyStore store, int index, float[] color) {
+        this(store, index, color, 2);
+    }
 
+    protected Planet2D(BodyStore store, int index, float[] color, int trailDimensions) {
+        super(store, index, trailDimensions);
+        setColor(color);
+    }
+
+    private void setColor(float[] color) {
         if (color.length == 4) {
             this.color = color;
         } else {
@@ -23,6 +39,12 @@ public class Planet2D extends Body {
 
     @Override
     public void resolveCollision(Body p2) {
+		double positionX = getPositionX();
+		double positionY = getPositionY();
+		double velocityX = getVelocityX();
+		double velocityY = getVelocityY();
+		double mass = getMass();
+
 		double dx = p2.getPositionX() - positionX;
 		double dy = p2.getPositionY() - positionY;
 		double distance = Math.sqrt(dx * dx + dy * dy);
@@ -54,52 +76,59 @@ public class Planet2D extends Body {
     @Override
     public void drawTrail() {
 		glBegin(GL_POINTS);
-		for (double[] pos : trail) {
+		for (int i = 0; i < trail.size(); i++) {
 			glColor4f(Colors.WHITE[0], Colors.WHITE[1], Colors.WHITE[2], 1.0f);
-			glVertex2d(pos[0], pos[1]);
+			glVertex2d(trail.getX(i), trail.getY(i));
 		}
 		glEnd();
 	}
 
     @Override
-    public void updatePosition() {
-        positionX += velocityX;
-        positionY += velocityY;
+    public void updatePosition(double dt) {
+        setPositionX(getPositionX() + getVelocityX() * dt);
+        setPositionY(getPositionY() + getVelocityY() * dt);
+        recordTrail();
+    }
 
-        // Store past positions
-        if (trail.size() >= TRAIL_LENGTH) {
-            trail.poll(); // Remove oldest position
-        }
-        trail.add(new double[]{positionX, positionY});
+    @Override
+    public void recordTrail() {
+        // Store past positions, the buffer drops the oldest when full.
+        trail.add(getPositionX(), getPositionY(), 0);
     }
 
     @Override
     public void draw() {
-		glBegin(GL_TRIANGLE_FAN);
+		drawAt(getPositionX(), getPositionY(), 0, getRadius());
+    }
+
+    @Override
+    public void drawAt(double x, double y, double z, double radius, int resolution) {
+		glPushMatrix();
+
+		glTranslated(x, y, 0);
+		glScaled(radius, radius, 1);
 
 		glColor3f(color[0], color[1], color[2]);
-		glVertex2d(positionX, positionY);
-		for (int i = 0; i <= resolution; i++) {
-			double angle = 2.0 * Math.PI * ((double) i / resolution);
-			double x = positionX + radius * Math.cos(angle);
-			double y = positionY + radius * Math.sin(angle);
-			glVertex2d(x, y);
-		}
+		DiscMesh.get(resolution).draw();
 
-		glEnd();
+		glPopMatrix();
     }
 
     public void applyVelocity(double velocityX, double velocityY) {
-        this.velocityX = velocityX;
-        this.velocityY = velocityY;
+        setVelocityX(velocityX);
+        setVelocityY(velocityY);
     }
 
     public void checkBorderCollision(int screenWidth, int screenHeight) {
+        double positionX = getPositionX();
+        double positionY = getPositionY();
+        double radius = getRadius();
+
         if (positionX + radius > screenWidth || positionX - radius < 0) {
-            velocityX = -velocityX;
+            setVelocityX(-getVelocityX());
         }
         if (positionY + radius > screenHeight || positionY - radius < 0) {
-            velocityY = -velocityY;
+            setVelocityY(-getVelocityY());
         }
     }
 
@@ -108,10 +137,10 @@ public class Planet2D extends Body {
     }
 
     public double getRadius() {
-        return radius;
+        return store.getRadius()[index];
     }
 
     public void setRadius(double radius) {
-        this.radius = radius;
+        store.getRadius()[index] = radius;
     }
 }
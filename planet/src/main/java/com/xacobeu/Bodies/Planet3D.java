@@ -4,21 +4,33 @@ import static org.lwjgl.opengl.GL11.*;
 
 import com.xacobeu.Colors;
 import com.xacobeu.PlanetRenderer;
+import com.xacobeu.Rendering.MaterialState;
+import com.xacobeu.Rendering.SphereMesh;
 
 public class Planet3D extends Planet2D {
-    private double positionZ;
-    private double velocityZ;
     private boolean isEmissive = false;
 
     public Planet3D(double positionX, double positionY, double positionZ, double radius, double mass, float[] color, boolean isEmissive) {
-        super(positionX, positionY, radius, mass, color);
+        super(positionX, positionY, radius, mass, color, 3);
+        this.isEmissive = isEmissive;
+        setPositionZ(positionZ);
+    }
+
+    public Planet3D(BodyStore store, int index, float[] color, boolean isEmissive) {
+        super(store, index, color, 3);
         this.isEmissive = isEmissive;
-        this.positionZ = positionZ;
-        this.velocityZ = 0;
     }
 
     @Override
     public void resolveCollision(Body p2) {
+		double positionX = getPositionX();
+		double positionY = getPositionY();
+		double positionZ = getPositionZ();
+		double velocityX = getVelocityX();
+		double velocityY = getVelocityY();
+		double velocityZ = getVelocityZ();
+		double mass = getMass();
+
 		double dx = p2.getPositionX() - positionX;
 		double dy = p2.getPositionY() - positionY;
         double dz = p2.getPositionZ() - positionZ;
@@ -40,10 +52,10 @@ public class Planet3D extends Planet2D {
 		if (vn > 0) return; // They are moving apart, no need to resolve
 	
         // Move planets back to avoid overlap
-        double overlap = radius + ((Planet3D) p2).getRadius() - distance;
-        positionX -= overlap * nx / 2;
-        positionY -= overlap * ny / 2;
-        positionZ -= overlap * nz / 2;
+        double overlap = getRadius() + ((Planet3D) p2).getRadius() - distance;
+        setPositionX(positionX - overlap * nx / 2);
+        setPositionY(positionY - overlap * ny / 2);
+        setPositionZ(positionZ - overlap * nz / 2);
         p2.setPositionX(p2.getPositionX() + overlap * nx / 2);
         p2.setPositionY(p2.getPositionY() + overlap * ny / 2);
         p2.setPositionZ(p2.getPositionZ() + overlap * nz / 2);
@@ -72,30 +84,29 @@ public class Planet3D extends Planet2D {
 	}
 
     @Override
-    public void updatePosition() {
-        super.updatePosition();
-        positionZ += velocityZ;
+    public void updatePosition(double dt) {
+        setPositionZ(getPositionZ() + getVelocityZ() * dt);
+        super.updatePosition(dt);
+    }
 
-        // Store past positions
-        if (trail.size() >= TRAIL_LENGTH) {
-            trail.poll(); // Remove oldest position
-        }
-        trail.add(new double[]{positionX, positionY, positionZ});
+    @Override
+    public void recordTrail() {
+        // Store past positions, the buffer drops the oldest when full.
+        trail.add(getPositionX(), getPositionY(), getPositionZ());
     }
 
     @Override
     public void drawTrail() {
-        if (trail.isEmpty() || trail == null) return;
+        if (trail.isEmpty()) return;
         
         // Disable lighting for the trail
         glDisable(GL_LIGHTING);
         glColor3f(Colors.WHITE[0], Colors.WHITE[1], Colors.WHITE[2]);
+        MaterialState.invalidate();
 
         glBegin(GL_POINTS);
-        for (double[] pos : trail) {
-            if (pos != null && pos.length == 3) {
-                glVertex3d(pos[0], pos[1], pos[2]);
-            }
+        for (int i = 0; i < trail.size(); i++) {
+            glVertex3d(trail.getX(i), trail.getY(i), trail.getZ(i));
         }
         glEnd();
 
@@ -104,93 +115,41 @@ public class Planet3D extends Planet2D {
 
     @Override
     public void draw() {
-        glPushMatrix();
-        
-        // Translate to the planet's position
-        glTranslatef((float) positionX, (float) positionY, (float) positionZ);
-        
-        // Set the planet's color
-        glColor3f(color[0], color[1], color[2]);
-        
-        if (PlanetRenderer.getLightingEnabled()) {
-            if (isEmissive) {
+        drawAt(getPositionX(), getPositionY(), getPositionZ(), getRadius());
+    }
 
-                // Set material properties
-                float[] materialAmbient = {0.2f, 0.2f, 0.2f, 1.0f}; // Ambient reflection
-                float[] materialDiffuse = {color[0], color[1], color[2], 1.0f}; // Diffuse reflection (use planet's color)
-                float[] materialSpecular = {1.0f, 1.0f, 1.0f, 1.0f}; // Specular reflection (white)
+    @Override
+    public void drawAt(double x, double y, double z, double radius, int resolution) {
+        glPushMatrix();
 
-                glMaterialfv(GL_FRONT, GL_AMBIENT, materialAmbient);
-                glMaterialfv(GL_FRONT, GL_DIFFUSE, materialDiffuse);
-                glMaterialfv(GL_FRONT, GL_SPECULAR, materialSpecular);
+        // Translate to the planet's position and scale the unit sphere
+        glTranslated(x, y, z);
+        glScaled(radius, radius, radius);
 
-                float[] materialEmission = {color[0], color[1], color[2], 1.0f};
-                glMaterialfv(GL_FRONT, GL_EMISSION, materialEmission);
+        // Set the planet's color and material, skipped if unchanged
+        MaterialState.apply(color, isEmissive, PlanetRenderer.getLightingEnabled());
 
-            } else {
-                float[] materialEmission = {0.0f, 0.0f, 0.0f, 1.0f};
-                glMaterialfv(GL_FRONT, GL_EMISSION, materialEmission);
-        
-                // Make no material properties
-                glMaterialfv(GL_FRONT, GL_AMBIENT, color);
-                glMaterialfv(GL_FRONT, GL_DIFFUSE, color);
-                glMaterialfv(GL_FRONT, GL_SPECULAR, color);
-            }
-        }
-    
         // Draw the sphere
-        for (int i = 0; i <= resolution; i++) {
-            double lat0 = Math.PI * (-0.5 + (double) (i - 1) / resolution);
-            double z0 = Math.sin(lat0);
-            double zr0 = Math.cos(lat0);
-    
-            double lat1 = Math.PI * (-0.5 + (double) i / resolution);
-            double z1 = Math.sin(lat1);
-            double zr1 = Math.cos(lat1);
-    
-            glBegin(GL_QUAD_STRIP);
-            for (int j = 0; j <= resolution; j++) {
-                double lng = 2 * Math.PI * (double) (j - 1) / resolution;
-                double x = Math.cos(lng);
-                double y = Math.sin(lng);
-    
-                glNormal3f((float) (x * zr0), (float) (y * zr0), (float) (z0));
-                glVertex3f((float) (radius * x * zr0), (float) (radius * y * zr0), (float) (radius * z0));
-                glNormal3f((float) (x * zr1), (float) (y * zr1), (float) (z1));
-                glVertex3f((float) (radius * x * zr1), (float) (radius * y * zr1), (float) (radius * z1));
-            }
-            glEnd();
-        }
-    
+        SphereMesh.get(resolution).draw();
+
         glPopMatrix();
     }
 
     public void applyVelocity(double velocityX, double velocityY, double velocityZ) {
         super.applyVelocity(velocityX, velocityY);
-        this.velocityZ += velocityZ;
+        setVelocityZ(getVelocityZ() + velocityZ);
     }
 
     public void checkBorderCollision(int screenWidth, int screenHeight, int screenDepth) {
         super.checkBorderCollision(screenWidth, screenHeight);
+        double positionZ = getPositionZ();
+        double radius = getRadius();
         if (positionZ + radius > screenDepth || positionZ - radius < 0) {
-            velocityZ = -velocityZ;
+            setVelocityZ(-getVelocityZ());
         }
     }
 
-    public double getPositionZ() {
-        return positionZ;
-    }
-
-    public double getVelocityZ() {
-        return velocityZ;
-    }
-
-    public void setPositionZ(double positionZ) {
-        this.positionZ = positionZ;
-    }
-
-    public void setVelocityZ(double velocityZ) {
-        this.velocityZ = velocityZ;
+    public boolean isEmissive() {
+        return isEmissive;
     }
-    
 }
@@ -0,0 +1,133 @@
+package com.xacobeu.Bodies;
+
+import java.util.Arrays;
+
+// Fixed-capacity ring buffer of past positions stored in one primitive array.
+// Storage grows on demand up to the capacity, so bodies that never record a
+// trail stay small; once full, recording a point never allocates.
+public class TrailBuffer {
+    private static final int INITIAL_POINTS = 64;
+
+    private double[] data = new double[0];
+    private final int capacity;
+    private final int dimensions;
+
+    // Slot of the oldest point and number of stored points.
+    private int start = 0;
+    private int size = 0;
+
+    // Points added since creation or the last clear, never wraps.
+    private long totalAdded = 0;
+
+    public interface PointConsumer {
+        void accept(double x, double y, double z);
+    }
+
+    public TrailBuffer(int capacity, int dimensions) {
+        if (dimensions != 2 && dimensions != 3) {
+            throw new IllegalArgumentException("Trail dimensions must be 2 or 3");
+        }
+        this.capacity = capacity;
+        this.dimensions = dimensions;
+    }
+
+    public void add(double x, double y, double z) {
+        int slot;
+        if (size < capacity) {
+            if (size * dimensions == data.length) reserve(size + 1);
+            slot = slot(size);
+            size++;
+        } else {
+            // Overwrite the oldest point.
+            slot = start;
+            start = (start + 1) % capacity;
+        }
+
+        int offset = slot * dimensions;
+        data[offset] = x;
+        data[offset + 1] = y;
+        if (dimensions == 3) data[offset + 2] = z;
+        totalAdded++;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+        totalAdded = 0;
+    }
+
+    // Grows the storage to hold at least points points, up to the capacity.
+    // Only grows before the ring first wraps, while start is still 0.
+    public void reserve(int points) {
+        points = Math.min(points, capacity);
+        if (points * dimensions <= data.length) return;
+
+        int grown = Math.min(capacity, Math.max(points, Math.max(INITIAL_POINTS, data.length / dimensions * 2)));
+        data = Arrays.copyOf(data, grown * dimensions);
+    }
+
+    // Takes the first size slots of getData() as the trail, oldest first,
+    // after they were filled in place, e.g. when loading a checkpoint. Call
+    // reserve(size) before filling them.
+    public void restore(int size) {
+        this.start = 0;
+        this.size = Math.min(size, capacity);
+        this.totalAdded = this.size;
+    }
+
+    // Point accessors, i = 0 is the oldest point.
+
+    public double getX(int i) {
+        return data[slot(i) * dimensions];
+    }
+
+    public double getY(int i) {
+        return data[slot(i) * dimensions + 1];
+    }
+
+    public double getZ(int i) {
+        return dimensions == 3 ? data[slot(i) * dimensions + 2] : 0;
+    }
+
+    public void forEach(PointConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            int offset = slot(i) * dimensions;
+            consumer.accept(data[offset], data[offset + 1], dimensions == 3 ? data[offset + 2] : 0);
+        }
+    }
+
+    private int slot(int i) {
+        int slot = start + i;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTotalAdded() {
+        return totalAdded;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    // Raw ring storage, point i lives at slot (getStart() + i) % getCapacity().
+    // The array is replaced while the trail grows, so fetch it again after adding.
+    public double[] getData() {
+        return data;
+    }
+
+    public int getStart() {
+        return start;
+    }
+}
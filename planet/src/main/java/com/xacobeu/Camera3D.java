@@ -6,6 +6,11 @@ import org.lwjgl.BufferUtils;
 
 public class Camera3D {
 
+	// Perspective projection.
+	public static final float FOV = 90.0f;
+	public static final float Z_NEAR = 0.1f;
+	public static final float Z_FAR = 100000.0f;
+
 	// Camera speeds.
 	private final float SLOW_CAMERA_SPEED = 1.0f;
     private final float FAST_CAMERA_SPEED = 15.0f;
@@ -95,17 +100,33 @@ public class Camera3D {
     public FloatBuffer createViewMatrix() {
 		// Create the view matrix
 		FloatBuffer viewMatrix = BufferUtils.createFloatBuffer(16);
-		
+		viewMatrix.put(getViewMatrix()).flip();
+
+		return viewMatrix;
+	}
+
+	// Column-major view matrix, as loaded by createViewMatrix().
+	public float[] getViewMatrix() {
 		// Calculate the camera's look-at point
 		float lookAtX = cameraX + frontX;
 		float lookAtY = cameraY + frontY;
 		float lookAtZ = cameraZ + frontZ;
 
 		// Calculate the view matrix using the camera's position, look-at point, and up vector
-		float[] viewMatrixArray = calculateLookAtMatrix(cameraX, cameraY, cameraZ, lookAtX, lookAtY, lookAtZ, upX, upY, upZ);
-		viewMatrix.put(viewMatrixArray).flip();
+		return calculateLookAtMatrix(cameraX, cameraY, cameraZ, lookAtX, lookAtY, lookAtZ, upX, upY, upZ);
+	}
 
-		return viewMatrix;
+	// Column-major perspective matrix, the same as glFrustum with FOV, Z_NEAR and Z_FAR.
+	public static float[] getProjectionMatrix(float aspect) {
+		float top = (float) Math.tan(Math.toRadians(FOV / 2.0)) * Z_NEAR;
+		float right = top * aspect;
+
+		return new float[]{
+			Z_NEAR / right, 0.0f, 0.0f, 0.0f,
+			0.0f, Z_NEAR / top, 0.0f, 0.0f,
+			0.0f, 0.0f, -(Z_FAR + Z_NEAR) / (Z_FAR - Z_NEAR), -1.0f,
+			0.0f, 0.0f, -2.0f * Z_FAR * Z_NEAR / (Z_FAR - Z_NEAR), 0.0f
+		};
 	}
 
     private float[] calculateLookAtMatrix(float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ, float upX, float upY, float upZ) {
@@ -0,0 +1,361 @@
+package com.xacobeu.Gravity;
+
+import java.util.Arrays;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Barnes-Hut tree code. Builds an octree (3D) or quadtree (2D) each step and
+// approximates distant cells by their centre of mass, giving O(n log n).
+public class BarnesHutSolver implements GravitySolver {
+    private static final int MAX_DEPTH = 48;
+
+    private final boolean threeDimensional;
+    private final int childCount;
+
+    // Opening angle: cells with size / distance below theta are approximated.
+    private double theta;
+
+    // Error reporting against the direct sum.
+    private boolean measureError = false;
+    private double rmsError = 0;
+    private double maxError = 0;
+    private final DirectSumSolver reference = new DirectSumSolver();
+    private double[] refX = new double[0];
+    private double[] refY = new double[0];
+    private double[] refZ = new double[0];
+
+    // Node storage. Children of a node are allocated as one contiguous block.
+    private double[] cellX = new double[0];
+    private double[] cellY = new double[0];
+    private double[] cellZ = new double[0];
+    private double[] cellHalf = new double[0];
+    private double[] comX = new double[0];
+    private double[] comY = new double[0];
+    private double[] comZ = new double[0];
+    private double[] nodeMass = new double[0];
+    private int[] firstChild = new int[0];
+    private int[] bodyHead = new int[0];
+    private int nodeCount = 0;
+
+    // Linked list of bodies sharing a leaf (only at MAX_DEPTH).
+    private int[] nextBody = new int[0];
+
+    private int[] stack = new int[64];
+
+    public BarnesHutSolver(boolean threeDimensional, double theta) {
+        this.threeDimensional = threeDimensional;
+        this.childCount = threeDimensional ? 8 : 4;
+        this.theta = theta;
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, null, bodies.size(), ax, ay, az);
+
+        if (measureError) {
+            measureError(bodies, g, ax, ay, az);
+        }
+    }
+
+    // The tree is still built from every body, only the walks are limited.
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, active, activeCount, ax, ay, az);
+    }
+
+    private void compute(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        int n = bodies.size();
+        if (n == 0) return;
+
+        buildTree(bodies);
+        computeMoments(bodies);
+
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+        double[] radius = bodies.getRadius();
+        double theta2 = theta * theta;
+
+        for (int k = 0; k < count; k++) {
+            int i = active == null ? k : active[k];
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                if (nodeMass[node] == 0) continue;
+
+                if (firstChild[node] < 0) {
+                    for (int j = bodyHead[node]; j >= 0; j = nextBody[j]) {
+                        if (j == i) continue;
+
+                        double dx = x[j] - xi;
+                        double dy = y[j] - yi;
+                        double dz = z[j] - zi;
+                        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        // Overlapping bodies are handled as collisions instead.
+                        if (distance <= radius[i] + radius[j]) continue;
+
+                        double s = g * mass[j] / (distance * distance * distance);
+                        sumX += s * dx;
+                        sumY += s * dy;
+                        sumZ += s * dz;
+                    }
+                    continue;
+                }
+
+                double dx = comX[node] - xi;
+                double dy = comY[node] - yi;
+                double dz = comZ[node] - zi;
+                double d2 = dx * dx + dy * dy + dz * dz;
+                double half = cellHalf[node];
+                double size = 2 * half;
+
+                // A cell holding body i is always opened, a large theta would
+                // otherwise let the body pull on itself through the cell's
+                // centre of mass.
+                boolean containsBody = Math.abs(xi - cellX[node]) <= half
+                        && Math.abs(yi - cellY[node]) <= half
+                        && (!threeDimensional || Math.abs(zi - cellZ[node]) <= half);
+
+                if (!containsBody && size * size < theta2 * d2) {
+                    double distance = Math.sqrt(d2);
+                    double s = g * nodeMass[node] / (d2 * distance);
+                    sumX += s * dx;
+                    sumY += s * dy;
+                    sumZ += s * dz;
+                } else {
+                    if (top + childCount > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    int child = firstChild[node];
+                    for (int c = 0; c < childCount; c++) {
+                        stack[top++] = child + c;
+                    }
+                }
+            }
+
+            ax[i] = sumX;
+            ay[i] = sumY;
+            az[i] = sumZ;
+        }
+    }
+
+    private void buildTree(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+
+        // Bounding cube of all bodies.
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxZ = Math.max(maxZ, z[i]);
+        }
+        double half = Math.max(maxX - minX, maxY - minY);
+        if (threeDimensional) half = Math.max(half, maxZ - minZ);
+        half = half / 2 + 1e-9;
+
+        if (nextBody.length < n) nextBody = new int[n];
+        nodeCount = 0;
+        int root = allocateNodes(1);
+        cellX[root] = (minX + maxX) / 2;
+        cellY[root] = (minY + maxY) / 2;
+        cellZ[root] = threeDimensional ? (minZ + maxZ) / 2 : 0;
+        cellHalf[root] = half;
+
+        for (int i = 0; i < n; i++) {
+            insert(i, x, y, z);
+        }
+    }
+
+    private void insert(int i, double[] x, double[] y, double[] z) {
+        int node = 0;
+        int depth = 0;
+
+        while (true) {
+            if (firstChild[node] >= 0) {
+                node = firstChild[node] + childIndex(node, x[i], y[i], z[i]);
+                depth++;
+                continue;
+            }
+
+            if (bodyHead[node] < 0) {
+                bodyHead[node] = i;
+                nextBody[i] = -1;
+                return;
+            }
+
+            if (depth >= MAX_DEPTH) {
+                nextBody[i] = bodyHead[node];
+                bodyHead[node] = i;
+                return;
+            }
+
+            // Split the leaf and push its single body down one level.
+            int existing = bodyHead[node];
+            int child = allocateNodes(childCount);
+            firstChild[node] = child;
+            bodyHead[node] = -1;
+
+            double quarter = cellHalf[node] / 2;
+            for (int c = 0; c < childCount; c++) {
+                cellX[child + c] = cellX[node] + ((c & 1) != 0 ? quarter : -quarter);
+                cellY[child + c] = cellY[node] + ((c & 2) != 0 ? quarter : -quarter);
+                cellZ[child + c] = cellZ[node] + ((c & 4) != 0 ? quarter : -quarter);
+                cellHalf[child + c] = quarter;
+            }
+            if (!threeDimensional) {
+                for (int c = 0; c < childCount; c++) cellZ[child + c] = 0;
+            }
+
+            int target = child + childIndex(node, x[existing], y[existing], z[existing]);
+            bodyHead[target] = existing;
+            nextBody[existing] = -1;
+        }
+    }
+
+    private int childIndex(int node, double px, double py, double pz) {
+        int index = 0;
+        if (px >= cellX[node]) index |= 1;
+        if (py >= cellY[node]) index |= 2;
+        if (threeDimensional && pz >= cellZ[node]) index |= 4;
+        return index;
+    }
+
+    // Children always come after their parent, so a reverse sweep is post-order.
+    private void computeMoments(BodyStore bodies) {
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            double m = 0, mx = 0, my = 0, mz = 0;
+
+            if (firstChild[node] < 0) {
+                for (int j = bodyHead[node]; j >= 0; j = nextBody[j]) {
+                    m += mass[j];
+                    mx += mass[j] * x[j];
+                    my += mass[j] * y[j];
+                    mz += mass[j] * z[j];
+                }
+            } else {
+                int child = firstChild[node];
+                for (int c = 0; c < childCount; c++) {
+                    double cm = nodeMass[child + c];
+                    m += cm;
+                    mx += cm * comX[child + c];
+                    my += cm * comY[child + c];
+                    mz += cm * comZ[child + c];
+                }
+            }
+
+            nodeMass[node] = m;
+            if (m > 0) {
+                comX[node] = mx / m;
+                comY[node] = my / m;
+                comZ[node] = mz / m;
+            }
+        }
+    }
+
+    private int allocateNodes(int count) {
+        int first = nodeCount;
+        nodeCount += count;
+
+        if (nodeCount > firstChild.length) {
+            int capacity = Math.max(nodeCount, firstChild.length * 2 + 64);
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            cellZ = Arrays.copyOf(cellZ, capacity);
+            cellHalf = Arrays.copyOf(cellHalf, capacity);
+            comX = Arrays.copyOf(comX, capacity);
+            comY = Arrays.copyOf(comY, capacity);
+            comZ = Arrays.copyOf(comZ, capacity);
+            nodeMass = Arrays.copyOf(nodeMass, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            bodyHead = Arrays.copyOf(bodyHead, capacity);
+        }
+
+        for (int i = first; i < nodeCount; i++) {
+            firstChild[i] = -1;
+            bodyHead[i] = -1;
+            nodeMass[i] = 0;
+        }
+        return first;
+    }
+
+    // Relative error of each body's acceleration against the direct sum.
+    private void measureError(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        int n = bodies.size();
+        if (refX.length < n) {
+            refX = new double[n];
+            refY = new double[n];
+            refZ = new double[n];
+        }
+        reference.computeAccelerations(bodies, g, refX, refY, refZ);
+
+        double sumSquares = 0;
+        double max = 0;
+        int counted = 0;
+        for (int i = 0; i < n; i++) {
+            double ex = ax[i] - refX[i];
+            double ey = ay[i] - refY[i];
+            double ez = az[i] - refZ[i];
+            double magnitude = Math.sqrt(refX[i] * refX[i] + refY[i] * refY[i] + refZ[i] * refZ[i]);
+            if (magnitude == 0) continue;
+
+            double error = Math.sqrt(ex * ex + ey * ey + ez * ez) / magnitude;
+            sumSquares += error * error;
+            max = Math.max(max, error);
+            counted++;
+        }
+
+        rmsError = counted > 0 ? Math.sqrt(sumSquares / counted) : 0;
+        maxError = max;
+    }
+
+    @Override
+    public String getName() {
+        return "Barnes-Hut";
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    public void setTheta(double theta) {
+        this.theta = theta;
+    }
+
+    public boolean isMeasuringError() {
+        return measureError;
+    }
+
+    public void setMeasureError(boolean measureError) {
+        this.measureError = measureError;
+    }
+
+    public double getRmsError() {
+        return rmsError;
+    }
+
+    public double getMaxError() {
+        return maxError;
+    }
+}
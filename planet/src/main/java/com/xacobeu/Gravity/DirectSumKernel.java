@@ -0,0 +1,11 @@
+package com.xacobeu.Gravity;
+
+// Row kernel behind VectorDirectSumSolver. Fills the acceleration of bodies
+// [0, count), indexed through active when it is not null, from all n bodies.
+// Pairs closer than the sum of their radii are skipped like in the other
+// solvers; softening2 is added to the squared distance of the rest.
+interface DirectSumKernel {
+    void compute(double[] x, double[] y, double[] z, double[] mass, double[] radius, int n,
+            double g, double softening2, int[] active, int count,
+            double[] ax, double[] ay, double[] az);
+}
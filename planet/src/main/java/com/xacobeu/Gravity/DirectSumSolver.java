@@ -0,0 +1,116 @@
+package com.xacobeu.Gravity;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Brute-force O(n^2) sum over all pairs. Used as the accurate reference.
+public class DirectSumSolver implements GravitySolver {
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        computePairs(bodies, g, ax, ay, az);
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        computeRange(bodies, g, active, ax, ay, az, 0, activeCount);
+    }
+
+    // Visits each unordered pair once and applies Newton's third law, so the
+    // square root and 1 / d^3 are shared by both bodies. Half the work of
+    // computeRange, but every row is written by many iterations.
+    static void computePairs(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+        double[] radius = bodies.getRadius();
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = 0;
+            ay[i] = 0;
+            az[i] = 0;
+        }
+
+        for (int i = 0; i < n; i++) {
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            double mi = mass[i];
+            double ri = radius[i];
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+
+            for (int j = i + 1; j < n; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double dz = z[j] - zi;
+
+                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                // Overlapping bodies are handled as collisions instead.
+                if (distance <= ri + radius[j]) continue;
+
+                double s = g / (distance * distance * distance);
+                double si = s * mass[j];
+                double sj = s * mi;
+                sumX += si * dx;
+                sumY += si * dy;
+                sumZ += si * dz;
+                ax[j] -= sj * dx;
+                ay[j] -= sj * dy;
+                az[j] -= sj * dz;
+            }
+
+            ax[i] += sumX;
+            ay[i] += sumY;
+            az[i] += sumZ;
+        }
+    }
+
+    // Sums the acceleration of bodies [from, to) over all others, indexed
+    // through active when it is not null. Each row only writes its own
+    // entries, so ranges can be computed concurrently.
+    static void computeRange(BodyStore bodies, double g, int[] active, double[] ax, double[] ay, double[] az, int from, int to) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+        double[] radius = bodies.getRadius();
+
+        for (int k = from; k < to; k++) {
+            int i = active == null ? k : active[k];
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+
+                double dx = x[j] - x[i];
+                double dy = y[j] - y[i];
+                double dz = z[j] - z[i];
+
+                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                // Overlapping bodies are handled as collisions instead.
+                if (distance <= radius[i] + radius[j]) continue;
+
+                double s = g * mass[j] / (distance * distance * distance);
+                sumX += s * dx;
+                sumY += s * dy;
+                sumZ += s * dz;
+            }
+
+            ax[i] = sumX;
+            ay[i] = sumY;
+            az[i] = sumZ;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Direct sum";
+    }
+}
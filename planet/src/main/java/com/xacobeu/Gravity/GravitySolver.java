@@ -0,0 +1,18 @@
+package com.xacobeu.Gravity;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Computes the gravitational acceleration on every body in the store.
+// g is the gravitational constant already scaled to simulation units.
+public interface GravitySolver {
+    void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az);
+
+    // Same, but only bodies active[0..activeCount) need their entries filled.
+    // Used by block timestepping; solvers that cannot do better compute all.
+    default void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        computeAccelerations(bodies, g, ax, ay, az);
+    }
+
+    String getName();
+}
@@ -0,0 +1,93 @@
+package com.xacobeu.Gravity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Direct sum split across a ForkJoinPool. Every body's acceleration is summed
+// by one task over the full row rather than the serial solver's pair kernel,
+// so no two tasks write the same entry and results are identical whatever
+// the thread count.
+public class ParallelDirectSumSolver implements GravitySolver {
+    // Bodies per leaf task.
+    private static final int GRAIN = 64;
+
+    private final ForkJoinPool pool;
+
+    public ParallelDirectSumSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelDirectSumSolver(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, null, bodies.size(), ax, ay, az);
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, active, activeCount, ax, ay, az);
+    }
+
+    private void compute(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        if (count <= GRAIN) {
+            DirectSumSolver.computeRange(bodies, g, active, ax, ay, az, 0, count);
+            return;
+        }
+        pool.invoke(new RangeTask(bodies, g, active, ax, ay, az, 0, count));
+    }
+
+    @Override
+    public String getName() {
+        return "Direct sum (parallel)";
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BodyStore bodies;
+        private final double g;
+        private final int[] active;
+        private final double[] ax;
+        private final double[] ay;
+        private final double[] az;
+        private final int from;
+        private final int to;
+
+        RangeTask(BodyStore bodies, double g, int[] active, double[] ax, double[] ay, double[] az, int from, int to) {
+            this.bodies = bodies;
+            this.g = g;
+            this.active = active;
+            this.ax = ax;
+            this.ay = ay;
+            this.az = az;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                DirectSumSolver.computeRange(bodies, g, active, ax, ay, az, from, to);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(bodies, g, active, ax, ay, az, from, mid),
+                    new RangeTask(bodies, g, active, ax, ay, az, mid, to));
+        }
+    }
+}
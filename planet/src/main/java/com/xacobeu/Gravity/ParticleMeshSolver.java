@@ -0,0 +1,476 @@
+package com.xacobeu.Gravity;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Particle-mesh solver for large, fairly uniform systems. Each evaluation
+// fits a cubic grid of gridSize nodes per axis around the bodies, deposits
+// their mass with cloud-in-cell weights, convolves it with the Green's
+// function of 1 / r by FFT and interpolates the potential's gradient back
+// with the same weights. The grid is zero padded to twice its size so the
+// potential is that of an isolated system, not a periodic one. The 2D view
+// uses a single layer with the same 1 / r law.
+//
+// With short-range correction (P3M) the mesh only carries the long-range
+// part of the force, erf(r / 2rs) / r with rs = SPLIT_CELLS cells, and the
+// remainder is summed directly over neighbours within CUTOFF_SPLITS * rs.
+// Without it, forces between bodies less than a few cells apart are
+// underestimated.
+public class ParticleMeshSolver implements GravitySolver {
+    // Nodes kept free at each edge for the four-point gradient stencil.
+    private static final int MARGIN = 2;
+
+    private static final double SPLIT_CELLS = 1.25;
+    private static final double CUTOFF_SPLITS = 4.5;
+
+    // Bodies per task when interpolating or summing neighbours in parallel.
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    // Below about this many bodies the FFTs cost more than the direct sum
+    // they replace.
+    public static final int DEFAULT_DIRECT_LIMIT = 2048;
+
+    private final boolean threeDimensional;
+    private final boolean shortRange;
+
+    // Systems smaller than this are summed directly, 0 always uses the mesh.
+    private final int directLimit;
+    private volatile boolean usingDirectSum = false;
+    private final int gridSize;
+    private final int padded;
+    private final int depth;
+    private final int paddedDepth;
+    private final Fft fft;
+
+    // Padded grid, mass on the way in and potential on the way out, and the
+    // transformed Green's function. Allocated on first use.
+    private double[] re;
+    private double[] im;
+    private double[] green;
+
+    // Placement of the current evaluation's grid.
+    private double originX, originY, originZ;
+    private double cell;
+
+    // Neighbour lists for the short-range sum, bodies chained per bucket.
+    private int[] bucketHead = new int[0];
+    private int[] nextInBucket = new int[0];
+    private int bucketsX, bucketsY, bucketsZ;
+    private double bucketSize;
+    private double minX, minY, minZ;
+
+    private final ThreadLocal<double[][]> lines;
+
+    // Nodes per axis, a plane in 2D is cheap enough for a much finer grid.
+    public static int defaultGridSize(boolean threeDimensional) {
+        return threeDimensional ? 64 : 256;
+    }
+
+    public ParticleMeshSolver(boolean threeDimensional, boolean shortRange) {
+        this(threeDimensional, defaultGridSize(threeDimensional), shortRange, DEFAULT_DIRECT_LIMIT);
+    }
+
+    public ParticleMeshSolver(boolean threeDimensional, int gridSize, boolean shortRange, int directLimit) {
+        if (gridSize < 16 || Integer.bitCount(gridSize) != 1) {
+            throw new IllegalArgumentException("Grid size must be a power of two of at least 16: " + gridSize);
+        }
+        if (directLimit < 0) {
+            throw new IllegalArgumentException("Direct sum limit must not be negative: " + directLimit);
+        }
+        this.threeDimensional = threeDimensional;
+        this.shortRange = shortRange;
+        this.directLimit = directLimit;
+        this.gridSize = gridSize;
+        this.padded = 2 * gridSize;
+        this.depth = threeDimensional ? gridSize : 1;
+        this.paddedDepth = threeDimensional ? padded : 1;
+        this.fft = new Fft(padded);
+        this.lines = ThreadLocal.withInitial(() -> new double[2][padded]);
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, null, bodies.size(), ax, ay, az);
+    }
+
+    // The mesh always holds every body, only the interpolation is limited.
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, active, activeCount, ax, ay, az);
+    }
+
+    private void compute(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        if (bodies.size() == 0) return;
+
+        usingDirectSum = bodies.size() < directLimit;
+        if (usingDirectSum) {
+            if (active == null) {
+                DirectSumSolver.computePairs(bodies, g, ax, ay, az);
+            } else {
+                DirectSumSolver.computeRange(bodies, g, active, ax, ay, az, 0, count);
+            }
+            return;
+        }
+
+        if (green == null) {
+            re = new double[padded * padded * paddedDepth];
+            im = new double[re.length];
+            green = computeGreen();
+        }
+
+        placeGrid(bodies);
+        deposit(bodies);
+        solvePotential();
+        interpolate(bodies, g, active, count, ax, ay, az);
+
+        if (shortRange) {
+            buildBuckets(bodies);
+            addShortRange(bodies, g, active, count, ax, ay, az);
+        }
+    }
+
+    // Fits the grid to the bodies' bounding box, using cubic cells.
+    private void placeGrid(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+
+        double loX = x[0], hiX = x[0], loY = y[0], hiY = y[0], loZ = z[0], hiZ = z[0];
+        for (int i = 1; i < n; i++) {
+            loX = Math.min(loX, x[i]);
+            hiX = Math.max(hiX, x[i]);
+            loY = Math.min(loY, y[i]);
+            hiY = Math.max(hiY, y[i]);
+            loZ = Math.min(loZ, z[i]);
+            hiZ = Math.max(hiZ, z[i]);
+        }
+
+        double extent = Math.max(hiX - loX, hiY - loY);
+        if (threeDimensional) extent = Math.max(extent, hiZ - loZ);
+        if (extent <= 0) extent = 1;
+
+        // Bodies fill nodes MARGIN to gridSize - 1 - MARGIN.
+        cell = extent / (gridSize - 1 - 2 * MARGIN);
+        originX = loX - MARGIN * cell;
+        originY = loY - MARGIN * cell;
+        originZ = threeDimensional ? loZ - MARGIN * cell : loZ;
+    }
+
+    private void deposit(BodyStore bodies) {
+        Arrays.fill(re, 0);
+        Arrays.fill(im, 0);
+
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+        int last = gridSize - 2 - MARGIN;
+
+        for (int i = 0; i < n; i++) {
+            double u = (x[i] - originX) / cell;
+            double v = (y[i] - originY) / cell;
+            int ix = node(u, last);
+            int iy = node(v, last);
+            double fx = u - ix;
+            double fy = v - iy;
+            double m = mass[i];
+
+            if (!threeDimensional) {
+                int node = iy * padded + ix;
+                re[node] += m * (1 - fx) * (1 - fy);
+                re[node + 1] += m * fx * (1 - fy);
+                re[node + padded] += m * (1 - fx) * fy;
+                re[node + padded + 1] += m * fx * fy;
+                continue;
+            }
+
+            double w = (z[i] - originZ) / cell;
+            int iz = node(w, last);
+            double fz = w - iz;
+            int node = (iz * padded + iy) * padded + ix;
+            int layer = padded * padded;
+            re[node] += m * (1 - fx) * (1 - fy) * (1 - fz);
+            re[node + 1] += m * fx * (1 - fy) * (1 - fz);
+            re[node + padded] += m * (1 - fx) * fy * (1 - fz);
+            re[node + padded + 1] += m * fx * fy * (1 - fz);
+            re[node + layer] += m * (1 - fx) * (1 - fy) * fz;
+            re[node + layer + 1] += m * fx * (1 - fy) * fz;
+            re[node + layer + padded] += m * (1 - fx) * fy * fz;
+            re[node + layer + padded + 1] += m * fx * fy * fz;
+        }
+    }
+
+    // Convolves the mass with the Green's function. Only the first gridSize
+    // entries per axis hold mass or are read back, so lines that are all
+    // zero on the way in, or unused on the way out, are skipped.
+    private void solvePotential() {
+        int layer = padded * padded;
+
+        transformLines(depth * gridSize, line -> (line / gridSize) * layer + (line % gridSize) * padded, 1, false);
+        transformLines(depth * padded, line -> (line / padded) * layer + line % padded, padded, false);
+        if (threeDimensional) {
+            transformLines(layer, line -> line, layer, false);
+        }
+
+        for (int i = 0; i < re.length; i++) {
+            re[i] *= green[i];
+            im[i] *= green[i];
+        }
+
+        if (threeDimensional) {
+            transformLines(layer, line -> line, layer, true);
+        }
+        transformLines(depth * padded, line -> (line / padded) * layer + line % padded, padded, true);
+        transformLines(depth * gridSize, line -> (line / gridSize) * layer + (line % gridSize) * padded, 1, true);
+    }
+
+    private void transformLines(int count, IntUnaryOperator offset, int stride, boolean inverse) {
+        IntStream.range(0, count).parallel().forEach(line -> {
+            double[][] scratch = lines.get();
+            double[] lineRe = scratch[0];
+            double[] lineIm = scratch[1];
+            int start = offset.applyAsInt(line);
+
+            for (int k = 0, i = start; k < padded; k++, i += stride) {
+                lineRe[k] = re[i];
+                lineIm[k] = im[i];
+            }
+            fft.transform(lineRe, lineIm, inverse);
+            for (int k = 0, i = start; k < padded; k++, i += stride) {
+                re[i] = lineRe[k];
+                im[i] = lineIm[k];
+            }
+        });
+    }
+
+    // Transform of the Green's function in cell units over the padded grid,
+    // using the nearest periodic image so it is even and its transform real.
+    private double[] computeGreen() {
+        for (int k = 0; k < paddedDepth; k++) {
+            int dk = Math.min(k, paddedDepth - k);
+            for (int j = 0; j < padded; j++) {
+                int dj = Math.min(j, padded - j);
+                for (int i = 0; i < padded; i++) {
+                    int di = Math.min(i, padded - i);
+                    double s = Math.sqrt(di * di + dj * dj + dk * dk);
+                    re[(k * padded + j) * padded + i] = greenFunction(s);
+                }
+            }
+        }
+        Arrays.fill(im, 0);
+
+        int layer = padded * padded;
+        transformLines(paddedDepth * padded, line -> line * padded, 1, false);
+        transformLines(paddedDepth * padded, line -> (line / padded) * layer + line % padded, padded, false);
+        if (threeDimensional) {
+            transformLines(layer, line -> line, layer, false);
+        }
+        return re.clone();
+    }
+
+    private double greenFunction(double s) {
+        if (shortRange) {
+            if (s == 0) return -1 / (SPLIT_CELLS * Math.sqrt(Math.PI));
+            return -(1 - erfc(s / (2 * SPLIT_CELLS))) / s;
+        }
+        return s == 0 ? -1 : -1 / s;
+    }
+
+    // Acceleration from the potential's gradient, taken with a four-point
+    // difference at each of the body's nodes.
+    private void interpolate(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        int last = gridSize - 2 - MARGIN;
+        int layer = padded * padded;
+
+        // Potential per node is re / (cells in the padded grid) / cell, the
+        // gradient adds 1 / 12 cell.
+        double scale = -g / ((double) re.length * cell * 12 * cell);
+
+        IntStream rows = IntStream.range(0, count);
+        if (count > PARALLEL_THRESHOLD) rows = rows.parallel();
+        rows.forEach(k -> {
+            int i = active == null ? k : active[k];
+            double u = (x[i] - originX) / cell;
+            double v = (y[i] - originY) / cell;
+            int ix = node(u, last);
+            int iy = node(v, last);
+            double fx = u - ix;
+            double fy = v - iy;
+
+            int iz = 0;
+            double fz = 0;
+            if (threeDimensional) {
+                double w = (z[i] - originZ) / cell;
+                iz = node(w, last);
+                fz = w - iz;
+            }
+
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+            int corners = threeDimensional ? 8 : 4;
+            for (int c = 0; c < corners; c++) {
+                int cx = c & 1;
+                int cy = (c >> 1) & 1;
+                int cz = c >> 2;
+                double weight = (cx == 0 ? 1 - fx : fx) * (cy == 0 ? 1 - fy : fy) * (cz == 0 ? 1 - fz : fz);
+                int node = ((iz + cz) * padded + iy + cy) * padded + ix + cx;
+
+                sumX += weight * difference(node, 1);
+                sumY += weight * difference(node, padded);
+                if (threeDimensional) sumZ += weight * difference(node, layer);
+            }
+
+            ax[i] = scale * sumX;
+            ay[i] = scale * sumY;
+            az[i] = scale * sumZ;
+        });
+    }
+
+    // Lower node of a grid coordinate, clamped against rounding at the edges
+    // of the bounding box.
+    private static int node(double u, int last) {
+        return Math.max(MARGIN, Math.min((int) u, last));
+    }
+
+    // Twelve cells times the potential's derivative along stride.
+    private double difference(int node, int stride) {
+        return 8 * (re[node + stride] - re[node - stride]) - (re[node + 2 * stride] - re[node - 2 * stride]);
+    }
+
+    // Chains bodies into buckets one cutoff wide, so neighbours within the
+    // cutoff are in the same or an adjacent bucket.
+    private void buildBuckets(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+
+        bucketSize = CUTOFF_SPLITS * SPLIT_CELLS * cell;
+        minX = originX + MARGIN * cell;
+        minY = originY + MARGIN * cell;
+        minZ = threeDimensional ? originZ + MARGIN * cell : originZ;
+        int span = (int) ((gridSize - 1 - 2 * MARGIN) * cell / bucketSize) + 1;
+        bucketsX = span;
+        bucketsY = span;
+        bucketsZ = threeDimensional ? span : 1;
+
+        int buckets = bucketsX * bucketsY * bucketsZ;
+        if (bucketHead.length < buckets) bucketHead = new int[buckets];
+        Arrays.fill(bucketHead, 0, buckets, -1);
+        if (nextInBucket.length < n) nextInBucket = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            int bucket = bucketOf(x[i], y[i], z[i]);
+            nextInBucket[i] = bucketHead[bucket];
+            bucketHead[bucket] = i;
+        }
+    }
+
+    private int bucketOf(double px, double py, double pz) {
+        int bx = Math.min((int) ((px - minX) / bucketSize), bucketsX - 1);
+        int by = Math.min((int) ((py - minY) / bucketSize), bucketsY - 1);
+        int bz = threeDimensional ? Math.min((int) ((pz - minZ) / bucketSize), bucketsZ - 1) : 0;
+        return (bz * bucketsY + by) * bucketsX + bx;
+    }
+
+    // Adds the short-range remainder, erfc(t) + 2t / sqrt(pi) exp(-t^2) of
+    // the Newtonian force with t = r / 2rs, for neighbours within the cutoff.
+    private void addShortRange(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] mass = bodies.getMass();
+        double[] radius = bodies.getRadius();
+        double split = SPLIT_CELLS * cell;
+        double cutoff2 = bucketSize * bucketSize;
+        int reachZ = threeDimensional ? 1 : 0;
+
+        IntStream rows = IntStream.range(0, count);
+        if (count > PARALLEL_THRESHOLD) rows = rows.parallel();
+        rows.forEach(k -> {
+            int i = active == null ? k : active[k];
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            int bucket = bucketOf(xi, yi, zi);
+            int bx = bucket % bucketsX;
+            int by = (bucket / bucketsX) % bucketsY;
+            int bz = bucket / (bucketsX * bucketsY);
+
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+            for (int oz = Math.max(0, bz - reachZ); oz <= Math.min(bucketsZ - 1, bz + reachZ); oz++) {
+                for (int oy = Math.max(0, by - 1); oy <= Math.min(bucketsY - 1, by + 1); oy++) {
+                    for (int ox = Math.max(0, bx - 1); ox <= Math.min(bucketsX - 1, bx + 1); ox++) {
+                        for (int j = bucketHead[(oz * bucketsY + oy) * bucketsX + ox]; j >= 0; j = nextInBucket[j]) {
+                            if (j == i) continue;
+
+                            double dx = x[j] - xi;
+                            double dy = y[j] - yi;
+                            double dz = z[j] - zi;
+                            double d2 = dx * dx + dy * dy + dz * dz;
+                            if (d2 >= cutoff2) continue;
+
+                            double distance = Math.sqrt(d2);
+                            // Overlapping bodies are handled as collisions instead.
+                            if (distance <= radius[i] + radius[j]) continue;
+
+                            double t = distance / (2 * split);
+                            double factor = erfc(t) + 2 * t / Math.sqrt(Math.PI) * Math.exp(-t * t);
+                            double s = g * mass[j] * factor / (d2 * distance);
+                            sumX += s * dx;
+                            sumY += s * dy;
+                            sumZ += s * dz;
+                        }
+                    }
+                }
+            }
+
+            ax[i] += sumX;
+            ay[i] += sumY;
+            az[i] += sumZ;
+        });
+    }
+
+    // Complementary error function for x >= 0, Abramowitz and Stegun 7.1.26,
+    // absolute error below 1.5e-7.
+    static double erfc(double x) {
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        return poly * Math.exp(-x * x);
+    }
+
+    @Override
+    public String getName() {
+        String name = shortRange ? "P3M" : "Particle mesh";
+        return directLimit > 0 ? name + " (direct sum below " + directLimit + " bodies)" : name;
+    }
+
+    // Whether the last evaluation fell back to the direct sum.
+    public boolean isUsingDirectSum() {
+        return usingDirectSum;
+    }
+
+    public int getDirectLimit() {
+        return directLimit;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public boolean isShortRange() {
+        return shortRange;
+    }
+}
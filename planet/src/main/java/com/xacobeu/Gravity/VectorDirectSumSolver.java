@@ -0,0 +1,110 @@
+package com.xacobeu.Gravity;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Direct sum using the incubating Vector API, several pairs per instruction.
+// The vector kernel is compiled separately for Java 17+ and only used when
+// jdk.incubator.vector is available (run with --add-modules
+// jdk.incubator.vector); otherwise the scalar kernel below is used.
+public class VectorDirectSumSolver implements GravitySolver {
+    private static final String VECTOR_KERNEL = "com.xacobeu.Gravity.VectorKernel";
+
+    private final DirectSumKernel kernel;
+    private final boolean vectorised;
+    private double softening;
+
+    public VectorDirectSumSolver() {
+        this(0);
+    }
+
+    public VectorDirectSumSolver(double softening) {
+        DirectSumKernel vector = loadVectorKernel();
+        this.kernel = vector != null ? vector : new ScalarKernel();
+        this.vectorised = vector != null;
+        this.softening = softening;
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, null, bodies.size(), ax, ay, az);
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double g, int[] active, int activeCount,
+            double[] ax, double[] ay, double[] az) {
+        compute(bodies, g, active, activeCount, ax, ay, az);
+    }
+
+    private void compute(BodyStore bodies, double g, int[] active, int count, double[] ax, double[] ay, double[] az) {
+        kernel.compute(bodies.getX(), bodies.getY(), bodies.getZ(), bodies.getMass(), bodies.getRadius(),
+                bodies.size(), g, softening * softening, active, count, ax, ay, az);
+    }
+
+    // Any failure here (old class file version, missing module, no class)
+    // just means the scalar kernel is used.
+    private static DirectSumKernel loadVectorKernel() {
+        try {
+            DirectSumKernel kernel = (DirectSumKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+
+            // Run it once so linkage errors surface now rather than mid-step.
+            double[] one = {1};
+            double[] zero = {0};
+            kernel.compute(zero, zero, zero, one, zero, 1, 1, 0, null, 1, new double[1], new double[1], new double[1]);
+            return kernel;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return vectorised ? "Direct sum (SIMD)" : "Direct sum (SIMD unavailable, scalar)";
+    }
+
+    public boolean isVectorised() {
+        return vectorised;
+    }
+
+    public double getSoftening() {
+        return softening;
+    }
+
+    public void setSoftening(double softening) {
+        this.softening = softening;
+    }
+
+    static class ScalarKernel implements DirectSumKernel {
+        @Override
+        public void compute(double[] x, double[] y, double[] z, double[] mass, double[] radius, int n,
+                double g, double softening2, int[] active, int count,
+                double[] ax, double[] ay, double[] az) {
+            for (int k = 0; k < count; k++) {
+                int i = active == null ? k : active[k];
+                double sumX = 0;
+                double sumY = 0;
+                double sumZ = 0;
+
+                for (int j = 0; j < n; j++) {
+                    double dx = x[j] - x[i];
+                    double dy = y[j] - y[i];
+                    double dz = z[j] - z[i];
+                    double d2 = dx * dx + dy * dy + dz * dz;
+
+                    // Also skips i == j, whose distance is zero.
+                    double contact = radius[i] + radius[j];
+                    if (d2 <= contact * contact) continue;
+
+                    double soft = d2 + softening2;
+                    double s = g * mass[j] / (soft * Math.sqrt(soft));
+                    sumX += s * dx;
+                    sumY += s * dy;
+                    sumZ += s * dz;
+                }
+
+                ax[i] = sumX;
+                ay[i] = sumY;
+                az[i] = sumZ;
+            }
+        }
+    }
+}
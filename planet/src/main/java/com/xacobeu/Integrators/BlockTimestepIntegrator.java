@@ -0,0 +1,184 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Hierarchical block timesteps. Each body steps with dt / 2^level, where the
+// level comes from its acceleration and jerk. One call advances everyone by
+// dt using kick-drift-kick sub-steps; all bodies drift every sub-step, but
+// forces are only evaluated for bodies at the end of their own step.
+public class BlockTimestepIntegrator implements Integrator {
+    private final int maxLevel;
+    private final double eta;
+
+    // Per-body step level, 0 means the full dt.
+    private int[] level = new int[0];
+
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+
+    // Accelerations at the previous force evaluation, for the jerk estimate.
+    private double[] lastAx = new double[0];
+    private double[] lastAy = new double[0];
+    private double[] lastAz = new double[0];
+    private boolean[] hasJerk = new boolean[0];
+
+    private int[] active = new int[0];
+    private boolean initialised = false;
+
+    // Per-body force evaluations, to compare against a shared step.
+    private long forceEvaluations = 0;
+
+    public BlockTimestepIntegrator() {
+        this(10, 0.05);
+    }
+
+    public BlockTimestepIntegrator(int maxLevel, double eta) {
+        this.maxLevel = Math.max(0, Math.min(maxLevel, 30));
+        this.eta = eta;
+    }
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        if (n == 0) return;
+        ensureCapacity(bodies.getX().length);
+
+        // Fine ticks per dt, a level k step spans 2^(maxLevel - k) ticks.
+        int ticks = 1 << maxLevel;
+        double tickDt = dt / ticks;
+
+        if (!initialised) {
+            forces.evaluate(bodies, ax, ay, az);
+            forceEvaluations += n;
+            for (int i = 0; i < n; i++) {
+                hasJerk[i] = false;
+                level[i] = chooseLevel(i, bodies, dt, 0);
+            }
+            initialised = true;
+        }
+
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+
+        // Opening half kick for everyone, all bodies are synchronised at tick 0.
+        for (int i = 0; i < n; i++) {
+            double h = span(i) * tickDt / 2;
+            vx[i] += ax[i] * h;
+            vy[i] += ay[i] * h;
+            vz[i] += az[i] * h;
+        }
+
+        int tick = 0;
+        while (tick < ticks) {
+            // Next tick at which any body finishes its step.
+            int next = ticks;
+            for (int i = 0; i < n; i++) {
+                int span = span(i);
+                next = Math.min(next, tick + span - tick % span);
+            }
+
+            LeapfrogIntegrator.drift(bodies, (next - tick) * tickDt);
+            tick = next;
+
+            int activeCount = 0;
+            for (int i = 0; i < n; i++) {
+                if (tick % span(i) == 0) active[activeCount++] = i;
+            }
+
+            for (int k = 0; k < activeCount; k++) {
+                int i = active[k];
+                lastAx[i] = ax[i];
+                lastAy[i] = ay[i];
+                lastAz[i] = az[i];
+            }
+            forces.evaluate(bodies, active, activeCount, ax, ay, az);
+            forceEvaluations += activeCount;
+
+            for (int k = 0; k < activeCount; k++) {
+                int i = active[k];
+                double h = span(i) * tickDt;
+
+                // Closing half kick of the step that just ended.
+                vx[i] += ax[i] * h / 2;
+                vy[i] += ay[i] * h / 2;
+                vz[i] += az[i] * h / 2;
+
+                hasJerk[i] = true;
+                level[i] = chooseLevel(i, bodies, dt, h);
+
+                // A new step has to start on a tick that is a multiple of its span.
+                while (tick % span(i) != 0) level[i]++;
+
+                // Opening half kick of the next step, unless the block is done.
+                if (tick < ticks) {
+                    double hNext = span(i) * tickDt / 2;
+                    vx[i] += ax[i] * hNext;
+                    vy[i] += ay[i] * hNext;
+                    vz[i] += az[i] * hNext;
+                }
+            }
+        }
+    }
+
+    // Level for body i from eta * |a| / |jerk|, or eta * sqrt(radius / |a|)
+    // before a jerk estimate exists. lastStep is the step that produced a.
+    private int chooseLevel(int i, BodyStore bodies, double dt, double lastStep) {
+        double a = Math.sqrt(ax[i] * ax[i] + ay[i] * ay[i] + az[i] * az[i]);
+        if (a == 0) return 0;
+
+        double step;
+        if (hasJerk[i] && lastStep > 0) {
+            double jx = (ax[i] - lastAx[i]) / lastStep;
+            double jy = (ay[i] - lastAy[i]) / lastStep;
+            double jz = (az[i] - lastAz[i]) / lastStep;
+            double jerk = Math.sqrt(jx * jx + jy * jy + jz * jz);
+            step = jerk > 0 ? eta * a / jerk : dt;
+        } else {
+            double radius = bodies.getRadius()[i];
+            step = radius > 0 ? eta * Math.sqrt(radius / a) : dt;
+        }
+
+        int k = 0;
+        while (k < maxLevel && dt / (1 << k) > step) k++;
+        return k;
+    }
+
+    private int span(int i) {
+        return 1 << (maxLevel - level[i]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (level.length >= capacity) return;
+
+        level = new int[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        az = new double[capacity];
+        lastAx = new double[capacity];
+        lastAy = new double[capacity];
+        lastAz = new double[capacity];
+        hasJerk = new boolean[capacity];
+        active = new int[capacity];
+        initialised = false;
+    }
+
+    @Override
+    public void reset() {
+        initialised = false;
+    }
+
+    public int getLevel(int i) {
+        return level[i];
+    }
+
+    public long getForceEvaluations() {
+        return forceEvaluations;
+    }
+
+    @Override
+    public String getName() {
+        return "Block timesteps";
+    }
+}
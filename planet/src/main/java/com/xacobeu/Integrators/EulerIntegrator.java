@@ -0,0 +1,44 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Semi-implicit (symplectic) Euler: kick then drift. First order, one force
+// evaluation per step. This is what the simulation always used.
+public class EulerIntegrator implements Integrator {
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        if (ax.length < n) {
+            ax = new double[bodies.getX().length];
+            ay = new double[ax.length];
+            az = new double[ax.length];
+        }
+        forces.evaluate(bodies, ax, ay, az);
+
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+
+        for (int i = 0; i < n; i++) {
+            vx[i] += ax[i] * dt;
+            vy[i] += ay[i] * dt;
+            vz[i] += az[i] * dt;
+
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+            z[i] += vz[i] * dt;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Euler";
+    }
+}
@@ -0,0 +1,13 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Fills ax, ay, az with the accelerations at the current positions.
+public interface ForceEvaluator {
+    void evaluate(BodyStore bodies, double[] ax, double[] ay, double[] az);
+
+    // Only bodies active[0..activeCount) need their entries filled.
+    default void evaluate(BodyStore bodies, int[] active, int activeCount, double[] ax, double[] ay, double[] az) {
+        evaluate(bodies, ax, ay, az);
+    }
+}
@@ -0,0 +1,15 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Advances positions and velocities by dt using accelerations from forces.
+public interface Integrator {
+    void step(ForceEvaluator forces, BodyStore bodies, double dt);
+
+    // Drops anything cached between steps, called when bodies change outside
+    // the integrator (added, removed or moved by a collision).
+    default void reset() {
+    }
+
+    String getName();
+}
@@ -0,0 +1,60 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Drift-kick-drift leapfrog. Second order and symplectic with a single force
+// evaluation per step and nothing cached between steps.
+public class LeapfrogIntegrator implements Integrator {
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        if (ax.length < n) {
+            ax = new double[bodies.getX().length];
+            ay = new double[ax.length];
+            az = new double[ax.length];
+        }
+
+        drift(bodies, dt / 2);
+        forces.evaluate(bodies, ax, ay, az);
+        kick(bodies, ax, ay, az, dt);
+        drift(bodies, dt / 2);
+    }
+
+    static void drift(BodyStore bodies, double h) {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+
+        for (int i = 0; i < n; i++) {
+            x[i] += vx[i] * h;
+            y[i] += vy[i] * h;
+            z[i] += vz[i] * h;
+        }
+    }
+
+    static void kick(BodyStore bodies, double[] ax, double[] ay, double[] az, double h) {
+        int n = bodies.size();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+
+        for (int i = 0; i < n; i++) {
+            vx[i] += ax[i] * h;
+            vy[i] += ay[i] * h;
+            vz[i] += az[i] * h;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Leapfrog";
+    }
+}
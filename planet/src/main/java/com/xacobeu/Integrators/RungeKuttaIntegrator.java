@@ -0,0 +1,122 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Classic fourth-order Runge-Kutta. Accurate per step but not symplectic, so
+// energy drifts over long runs. Four force evaluations per step.
+public class RungeKuttaIntegrator implements Integrator {
+    private static final double[] STAGE = {0.5, 0.5, 1.0};
+    private static final double[] WEIGHT = {2.0, 2.0, 1.0};
+
+    // Start of step state.
+    private double[] x0 = new double[0];
+    private double[] y0 = new double[0];
+    private double[] z0 = new double[0];
+    private double[] vx0 = new double[0];
+    private double[] vy0 = new double[0];
+    private double[] vz0 = new double[0];
+
+    // Weighted sums of the stage derivatives.
+    private double[] sumX = new double[0];
+    private double[] sumY = new double[0];
+    private double[] sumZ = new double[0];
+    private double[] sumVx = new double[0];
+    private double[] sumVy = new double[0];
+    private double[] sumVz = new double[0];
+
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        ensureCapacity(bodies.getX().length);
+
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+
+        System.arraycopy(x, 0, x0, 0, n);
+        System.arraycopy(y, 0, y0, 0, n);
+        System.arraycopy(z, 0, z0, 0, n);
+        System.arraycopy(vx, 0, vx0, 0, n);
+        System.arraycopy(vy, 0, vy0, 0, n);
+        System.arraycopy(vz, 0, vz0, 0, n);
+
+        // Stage 1, derivatives at the start of the step.
+        forces.evaluate(bodies, ax, ay, az);
+        for (int i = 0; i < n; i++) {
+            sumX[i] = vx[i];
+            sumY[i] = vy[i];
+            sumZ[i] = vz[i];
+            sumVx[i] = ax[i];
+            sumVy[i] = ay[i];
+            sumVz[i] = az[i];
+        }
+
+        // Stages 2 to 4. The store's velocities and ax/ay/az hold the previous
+        // stage's derivatives and are replaced by this stage's state.
+        for (int s = 0; s < STAGE.length; s++) {
+            double h = STAGE[s] * dt;
+            for (int i = 0; i < n; i++) {
+                x[i] = x0[i] + h * vx[i];
+                y[i] = y0[i] + h * vy[i];
+                z[i] = z0[i] + h * vz[i];
+                vx[i] = vx0[i] + h * ax[i];
+                vy[i] = vy0[i] + h * ay[i];
+                vz[i] = vz0[i] + h * az[i];
+            }
+
+            forces.evaluate(bodies, ax, ay, az);
+
+            double w = WEIGHT[s];
+            for (int i = 0; i < n; i++) {
+                sumX[i] += w * vx[i];
+                sumY[i] += w * vy[i];
+                sumZ[i] += w * vz[i];
+                sumVx[i] += w * ax[i];
+                sumVy[i] += w * ay[i];
+                sumVz[i] += w * az[i];
+            }
+        }
+
+        double h = dt / 6;
+        for (int i = 0; i < n; i++) {
+            x[i] = x0[i] + h * sumX[i];
+            y[i] = y0[i] + h * sumY[i];
+            z[i] = z0[i] + h * sumZ[i];
+            vx[i] = vx0[i] + h * sumVx[i];
+            vy[i] = vy0[i] + h * sumVy[i];
+            vz[i] = vz0[i] + h * sumVz[i];
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (x0.length >= capacity) return;
+
+        x0 = new double[capacity];
+        y0 = new double[capacity];
+        z0 = new double[capacity];
+        vx0 = new double[capacity];
+        vy0 = new double[capacity];
+        vz0 = new double[capacity];
+        sumX = new double[capacity];
+        sumY = new double[capacity];
+        sumZ = new double[capacity];
+        sumVx = new double[capacity];
+        sumVy = new double[capacity];
+        sumVz = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        az = new double[capacity];
+    }
+
+    @Override
+    public String getName() {
+        return "RK4";
+    }
+}
@@ -0,0 +1,43 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Kick-drift-kick velocity Verlet. The closing kick's accelerations are reused
+// for the next step's opening kick, so it costs one force evaluation per step
+// once started.
+public class VelocityVerletIntegrator implements Integrator {
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+    private boolean cached = false;
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        if (ax.length < n) {
+            ax = new double[bodies.getX().length];
+            ay = new double[ax.length];
+            az = new double[ax.length];
+            cached = false;
+        }
+        if (!cached) {
+            forces.evaluate(bodies, ax, ay, az);
+        }
+
+        LeapfrogIntegrator.kick(bodies, ax, ay, az, dt / 2);
+        LeapfrogIntegrator.drift(bodies, dt);
+        forces.evaluate(bodies, ax, ay, az);
+        LeapfrogIntegrator.kick(bodies, ax, ay, az, dt / 2);
+        cached = true;
+    }
+
+    @Override
+    public void reset() {
+        cached = false;
+    }
+
+    @Override
+    public String getName() {
+        return "Velocity Verlet";
+    }
+}
@@ -0,0 +1,41 @@
+package com.xacobeu.Integrators;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Fourth-order symplectic integrator (Yoshida 1990), three leapfrog steps of
+// sizes w1, w0, w1 composed together. Three force evaluations per step.
+public class YoshidaIntegrator implements Integrator {
+    private static final double CBRT2 = Math.cbrt(2.0);
+    private static final double W1 = 1.0 / (2.0 - CBRT2);
+    private static final double W0 = -CBRT2 / (2.0 - CBRT2);
+
+    // Drift and kick coefficients.
+    private static final double[] C = {W1 / 2, (W0 + W1) / 2, (W0 + W1) / 2, W1 / 2};
+    private static final double[] D = {W1, W0, W1};
+
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] az = new double[0];
+
+    @Override
+    public void step(ForceEvaluator forces, BodyStore bodies, double dt) {
+        int n = bodies.size();
+        if (ax.length < n) {
+            ax = new double[bodies.getX().length];
+            ay = new double[ax.length];
+            az = new double[ax.length];
+        }
+
+        for (int k = 0; k < D.length; k++) {
+            LeapfrogIntegrator.drift(bodies, C[k] * dt);
+            forces.evaluate(bodies, ax, ay, az);
+            LeapfrogIntegrator.kick(bodies, ax, ay, az, D[k] * dt);
+        }
+        LeapfrogIntegrator.drift(bodies, C[3] * dt);
+    }
+
+    @Override
+    public String getName() {
+        return "Yoshida 4";
+    }
+}
@@ -0,0 +1,253 @@
+package com.xacobeu;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.xacobeu.Gravity.BarnesHutSolver;
+import com.xacobeu.Gravity.DirectSumSolver;
+import com.xacobeu.Gravity.GravitySolver;
+import com.xacobeu.Gravity.ParallelDirectSumSolver;
+import com.xacobeu.Gravity.ParticleMeshSolver;
+import com.xacobeu.Gravity.VectorDirectSumSolver;
+import com.xacobeu.Integrators.BlockTimestepIntegrator;
+import com.xacobeu.Integrators.EulerIntegrator;
+import com.xacobeu.Integrators.Integrator;
+import com.xacobeu.Integrators.LeapfrogIntegrator;
+import com.xacobeu.Integrators.RungeKuttaIntegrator;
+import com.xacobeu.Integrators.VelocityVerletIntegrator;
+import com.xacobeu.Integrators.YoshidaIntegrator;
+import com.xacobeu.Simulation.Checkpoint;
+import com.xacobeu.Simulation.ScenarioLoader;
+import com.xacobeu.Simulation.Scenes;
+import com.xacobeu.Simulation.SimulationEngine;
+
+// Command line runner for display-less machines. Loads a scenario, or the
+// default scene, runs a fixed number of steps and reports throughput and
+// energy drift. Never touches GLFW or Swing.
+public class PlanetBatch {
+	private static final String USAGE = String.join("\n",
+			"Usage: PlanetBatch [options] [scenario]",
+			"  --steps N           steps to run (default 10000)",
+			"  --dt X              timestep (default 1.0)",
+			"  --solver NAME       direct, parallel, barnes-hut, simd, pm or p3m (default direct)",
+			"  --theta X           Barnes-Hut opening angle (default 0.5)",
+			"  --grid N            particle-mesh nodes per axis (default 256 in 2D, 64 in 3D)",
+			"  --threads N         threads for the parallel solver (default one per core)",
+			"  --integrator NAME   euler, leapfrog, verlet, yoshida, rk4 or block (default euler)",
+			"  --3d                use the 3D default scene when no scenario is given",
+			"  --merge             merge colliding bodies instead of bouncing them",
+			"  --output FILE       final state, CSV if it ends in .csv, else a checkpoint",
+			"  --report FILE       append the results as a CSV row");
+
+	static final String[] SOLVERS = {"direct", "parallel", "barnes-hut", "simd", "pm", "p3m"};
+	static final String[] INTEGRATORS = {"euler", "leapfrog", "verlet", "yoshida", "rk4", "block"};
+
+	// Energy is a direct sum, skipped above this many bodies.
+	private static final int ENERGY_LIMIT = 20000;
+
+	// Time between progress lines.
+	private static final long PROGRESS_NANOS = 10_000_000_000L;
+
+	private long steps = 10000;
+	private double dt = 1.0;
+	private String solverName = "direct";
+	private double theta = 0.5;
+	private int gridSize = 0;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private String integratorName = "euler";
+	private boolean threeDimensional = false;
+	private boolean merge = false;
+	private Path scenario;
+	private Path output;
+	private Path report;
+
+	public static void main(String[] args) {
+		PlanetBatch batch = new PlanetBatch();
+		try {
+			batch.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		try {
+			batch.run();
+		} catch (IOException e) {
+			System.err.println("Batch run failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+				case "--steps": steps = Long.parseLong(value(args, ++i, arg)); break;
+				case "--dt": dt = Double.parseDouble(value(args, ++i, arg)); break;
+				case "--solver": solverName = value(args, ++i, arg); break;
+				case "--theta": theta = Double.parseDouble(value(args, ++i, arg)); break;
+				case "--grid": gridSize = Integer.parseInt(value(args, ++i, arg)); break;
+				case "--threads": threads = Integer.parseInt(value(args, ++i, arg)); break;
+				case "--integrator": integratorName = value(args, ++i, arg); break;
+				case "--3d": threeDimensional = true; break;
+				case "--merge": merge = true; break;
+				case "--output": output = Paths.get(value(args, ++i, arg)); break;
+				case "--report": report = Paths.get(value(args, ++i, arg)); break;
+				default:
+					if (arg.startsWith("--") || scenario != null) {
+						throw new IllegalArgumentException("Unexpected argument " + arg);
+					}
+					scenario = Paths.get(arg);
+			}
+		}
+		if (steps < 0) throw new IllegalArgumentException("--steps must not be negative");
+		if (threads < 1) throw new IllegalArgumentException("--threads must be at least 1");
+
+		// Fail on bad names before loading anything.
+		if (!Arrays.asList(SOLVERS).contains(solverName)) {
+			throw new IllegalArgumentException("Unknown solver " + solverName);
+		}
+		if (!Arrays.asList(INTEGRATORS).contains(integratorName)) {
+			throw new IllegalArgumentException("Unknown integrator " + integratorName);
+		}
+	}
+
+	static String value(String[] args, int i, String option) {
+		if (i >= args.length) throw new IllegalArgumentException(option + " needs a value");
+		return args[i];
+	}
+
+	private void run() throws IOException {
+		if (scenario != null) threeDimensional = ScenarioLoader.readDimensions(scenario) == 3;
+
+		SimulationEngine engine = new SimulationEngine(threeDimensional);
+		engine.setRecordTrails(false);
+		engine.setMergeCollisions(merge);
+		GravitySolver solver = createSolver(solverName, threeDimensional, theta, gridSize, threads);
+		engine.setSolver(solver);
+		engine.setIntegrator(createIntegrator(integratorName));
+
+		if (scenario != null) {
+			ScenarioLoader.load(engine, scenario);
+		} else if (threeDimensional) {
+			Scenes.addSunAndPlanets3D(engine);
+		} else {
+			Scenes.addSunAndPlanets2D(engine, PlanetRenderer.WIDTH / 2, PlanetRenderer.HEIGHT / 2);
+		}
+
+		int n = engine.getBodyCount();
+		System.out.printf("%s: %d bodies, %dD, %s, %s, dt %s, %d steps%n",
+				scenario != null ? scenario : "Default scene", n, threeDimensional ? 3 : 2,
+				solver.getName(), engine.getIntegrator().getName(), dt, steps);
+
+		boolean measureEnergy = n <= ENERGY_LIMIT;
+		double startEnergy = measureEnergy ? engine.computeEnergy() : Double.NaN;
+		long startInteractions = engine.getInteractionCount();
+
+		long start = System.nanoTime();
+		long lastProgress = start;
+		for (long step = 0; step < steps; step++) {
+			engine.step(dt);
+
+			long now = System.nanoTime();
+			if (now - lastProgress > PROGRESS_NANOS) {
+				lastProgress = now;
+				System.out.printf(Locale.ROOT, "  step %d of %d (%.0f%%)%n", step + 1, steps, 100.0 * (step + 1) / steps);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		if (solver instanceof ParallelDirectSumSolver) {
+			((ParallelDirectSumSolver) solver).shutdown();
+		}
+
+		long interactions = engine.getInteractionCount() - startInteractions;
+
+		double stepsPerSecond = seconds > 0 ? steps / seconds : 0;
+		double interactionsPerSecond = seconds > 0 ? interactions / seconds : 0;
+		System.out.printf(Locale.ROOT, "Elapsed          %.3f s%n", seconds);
+		if (engine.getBodyCount() != n) {
+			System.out.println("Bodies           " + n + " -> " + engine.getBodyCount());
+		}
+		System.out.printf(Locale.ROOT, "Steps/s          %.1f%n", stepsPerSecond);
+		System.out.printf(Locale.ROOT, "Interactions/s   %.4e%n", interactionsPerSecond);
+		// Left empty in the report when energy was skipped.
+		String driftField = "";
+		if (measureEnergy) {
+			double endEnergy = engine.computeEnergy();
+			double drift = (endEnergy - startEnergy) / Math.abs(startEnergy);
+			driftField = String.format(Locale.ROOT, "%.3e", drift);
+			System.out.printf(Locale.ROOT, "Energy           %.6e -> %.6e%n", startEnergy, endEnergy);
+			System.out.printf(Locale.ROOT, "Energy drift     %.3e%n", drift);
+		} else {
+			System.out.println("Energy           skipped above " + ENERGY_LIMIT + " bodies");
+		}
+
+		if (output != null) {
+			if (output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+				ScenarioLoader.writeCsv(engine, output);
+			} else {
+				Checkpoint.save(engine, output);
+			}
+			System.out.println("Final state      " + output);
+		}
+
+		if (report != null) {
+			appendReport(n, seconds, stepsPerSecond, interactionsPerSecond, driftField, engine);
+		}
+	}
+
+	private void appendReport(int n, double seconds, double stepsPerSecond, double interactionsPerSecond,
+			String drift, SimulationEngine engine) throws IOException {
+		boolean header = !Files.exists(report) || Files.size(report) == 0;
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+			if (header) {
+				out.println("scenario,bodies,dimensions,solver,integrator,dt,steps,seconds,steps_per_s,interactions_per_s,energy_drift");
+			}
+			out.println(String.format(Locale.ROOT, "%s,%d,%d,%s,%s,%s,%d,%.3f,%.1f,%.4e,%s",
+					scenario != null ? scenario : "default", n, threeDimensional ? 3 : 2, solverName,
+					engine.getIntegrator().getName().replace(',', ' '), dt, steps, seconds,
+					stepsPerSecond, interactionsPerSecond, drift));
+		}
+	}
+
+	static GravitySolver createSolver(String name, boolean threeDimensional, double theta) {
+		return createSolver(name, threeDimensional, theta, 0, Runtime.getRuntime().availableProcessors());
+	}
+
+	// A gridSize of 0 picks the particle-mesh default for the dimensions. The
+	// mesh is always used, so small runs measure it rather than the direct sum.
+	static GravitySolver createSolver(String name, boolean threeDimensional, double theta, int gridSize, int threads) {
+		if (gridSize == 0) gridSize = ParticleMeshSolver.defaultGridSize(threeDimensional);
+		switch (name) {
+			case "direct": return new DirectSumSolver();
+			case "parallel": return new ParallelDirectSumSolver(threads);
+			case "barnes-hut": return new BarnesHutSolver(threeDimensional, theta);
+			case "simd": return new VectorDirectSumSolver();
+			case "pm": return new ParticleMeshSolver(threeDimensional, gridSize, false, 0);
+			case "p3m": return new ParticleMeshSolver(threeDimensional, gridSize, true, 0);
+			default: throw new IllegalArgumentException("Unknown solver " + name);
+		}
+	}
+
+	static Integrator createIntegrator(String name) {
+		switch (name) {
+			case "euler": return new EulerIntegrator();
+			case "leapfrog": return new LeapfrogIntegrator();
+			case "verlet": return new VelocityVerletIntegrator();
+			case "yoshida": return new YoshidaIntegrator();
+			case "rk4": return new RungeKuttaIntegrator();
+			case "block": return new BlockTimestepIntegrator();
+			default: throw new IllegalArgumentException("Unknown integrator " + name);
+		}
+	}
+}
@@ -7,9 +7,36 @@ import org.lwjgl.opengl.*;
 
 import com.xacobeu.Bodies.Body;
 import com.xacobeu.Bodies.Planet2D;
-import com.xacobeu.Bodies.Planet3D;
-
-import java.util.ArrayList;
+import com.xacobeu.Gravity.BarnesHutSolver;
+import com.xacobeu.Gravity.DirectSumSolver;
+import com.xacobeu.Gravity.GravitySolver;
+import com.xacobeu.Gravity.ParallelDirectSumSolver;
+import com.xacobeu.Gravity.ParticleMeshSolver;
+import com.xacobeu.Gravity.VectorDirectSumSolver;
+import com.xacobeu.Integrators.BlockTimestepIntegrator;
+import com.xacobeu.Integrators.EulerIntegrator;
+import com.xacobeu.Integrators.Integrator;
+import com.xacobeu.Integrators.LeapfrogIntegrator;
+import com.xacobeu.Integrators.RungeKuttaIntegrator;
+import com.xacobeu.Integrators.VelocityVerletIntegrator;
+import com.xacobeu.Integrators.YoshidaIntegrator;
+import com.xacobeu.Profiling.Phase;
+import com.xacobeu.Profiling.PhaseTimer;
+import com.xacobeu.Profiling.TimingReport;
+import com.xacobeu.Rendering.DiscMesh;
+import com.xacobeu.Rendering.MaterialState;
+import com.xacobeu.Rendering.PointSprites;
+import com.xacobeu.Rendering.SphereMesh;
+import com.xacobeu.Rendering.TrailRenderer;
+import com.xacobeu.Rendering.ViewCuller;
+import com.xacobeu.Simulation.Checkpoint;
+import com.xacobeu.Simulation.ScenarioLoader;
+import com.xacobeu.Simulation.Scenes;
+import com.xacobeu.Simulation.SimulationEngine;
+import com.xacobeu.Simulation.SimulationRunner;
+import com.xacobeu.Simulation.Snapshot;
+import com.xacobeu.Simulation.TrajectoryReader;
+import com.xacobeu.Simulation.TrajectoryRecorder;
 
 import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
@@ -19,7 +46,10 @@ import static org.lwjgl.system.MemoryUtil.*;
 import javax.swing.*;
 
 import java.awt.*;
-import java.nio.FloatBuffer;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PlanetRenderer {
 
@@ -34,20 +64,35 @@ public class PlanetRenderer {
 	private static final int centerX = WIDTH / 2;
 	private static final int centerY = HEIGHT / 2;
 
-	// Gravitational constant.
-	private final double G = 6.67430e-11;
+	// Simulations.
+	private SimulationEngine engine2D = new SimulationEngine(false);
+	private SimulationEngine engine3D = new SimulationEngine(true);
 
-	// Objects.
-	private ArrayList<Body> objects2D = new ArrayList<>();
-	private ArrayList<Body> objects3D = new ArrayList<>();
-	private Camera3D camera = new Camera3D(0, 0, 5);
+	// Physics threads, each publishes snapshots of its engine.
+	private SimulationRunner runner2D = new SimulationRunner(engine2D);
+	private SimulationRunner runner3D = new SimulationRunner(engine3D);
 
-	// Canvas to integrate LJWGL with Swing.
-	private static boolean running = false;
+	// Shared by both engines, replaced only when the thread count changes.
+	private ParallelDirectSumSolver parallelSolver;
+	private Camera3D camera = new Camera3D(0, 0, 5);
+	private TrailRenderer trailRenderer = new TrailRenderer();
+	private ViewCuller viewCuller = new ViewCuller();
+
+	// Render thread timers, shown with the physics ones in timingLabel.
+	private PhaseTimer frameTimer = new PhaseTimer(Phase.FRAME);
+	private PhaseTimer drawTimer = new PhaseTimer(Phase.DRAW);
+	private PhaseTimer trailTimer = new PhaseTimer(Phase.TRAILS);
+	private PhaseTimer swapTimer = new PhaseTimer(Phase.SWAP);
+	private PointSprites pointSprites = new PointSprites();
+	private float[] projectionMatrix;
+
+	// Canvas to integrate LJWGL with Swing. Set from Swing, read by the
+	// render thread, which also clears it when a replay ends.
+	private volatile boolean running = false;
 	
 	// Rendering mode: 0 = 2D and 1 = 3D.
-	private int renderingMode = 0;
-	private static boolean lightingEnabled = false;
+	private volatile int renderingMode = 0;
+	private static volatile boolean lightingEnabled = false;
 
 	private boolean[] keyStates = new boolean[GLFW_KEY_LAST + 1];
 
@@ -59,41 +104,281 @@ public class PlanetRenderer {
 	private JButton startButton = new JButton("Start");
 	private JButton stopButton = new JButton("Stop");
 	private JButton resetButton = new JButton("Reset");
+	private JButton saveButton = new JButton("Save");
+	private JButton loadButton = new JButton("Load");
+	private JCheckBox recordCheckBox = new JCheckBox("Record");
+	private JButton replayButton = new JButton("Replay");
+	private JSlider replaySlider = new JSlider(0, 0, 0);
+	private JLabel replayStepLabel = new JLabel("");
+	private JTextField replayStepField = new JTextField(8);
 	private JToggleButton mode2D = new JToggleButton("2D");
 	private JToggleButton mode3D = new JToggleButton("3D");
 	private JCheckBox lightingCheckBox = new JCheckBox("Lighting");
+	private JCheckBox trailLinesCheckBox = new JCheckBox("Trail lines");
 	private JLabel cameraSpeedLabel = new JLabel("Camera Speed: " + camera.getCameraSpeed());
+	private JLabel timingLabel = new JLabel(TimingReport.toHtml());
+	private JButton timingButton = new JButton("Timings");
+	private javax.swing.Timer timingRefresh = new javax.swing.Timer(1000, e -> timingLabel.setText(TimingReport.toHtml()));
+	private JComboBox<String> solverBox = new JComboBox<>(new String[]{"Direct sum", "Direct sum (parallel)", "Barnes-Hut", "Direct sum (SIMD)", "Particle mesh", "P3M"});
+	private JSpinner thetaSpinner = new JSpinner(new SpinnerNumberModel(0.5, 0.0, 2.0, 0.1));
+	private JSpinner threadsSpinner = new JSpinner(new SpinnerNumberModel(Runtime.getRuntime().availableProcessors(), 1, 1024, 1));
+	private JCheckBox errorCheckBox = new JCheckBox("Force error");
+	private JLabel errorLabel = new JLabel("");
+	private JCheckBox mergeCheckBox = new JCheckBox("Merge collisions");
+	private JLabel stepsLabel = new JLabel("Steps/frame");
+	private JSpinner stepsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 100000, 1));
+	private JComboBox<String> integratorBox = new JComboBox<>(new String[]{"Euler", "Leapfrog", "Velocity Verlet", "Yoshida 4", "RK4", "Block timesteps"});
+	private JLabel dtLabel = new JLabel("dt");
+	private JSpinner dtSpinner = new JSpinner(new SpinnerNumberModel(1.0, 0.01, 100.0, 0.1));
 	
 	private ButtonGroup modes = new ButtonGroup();
 
+	// Recording shown instead of the simulation, null when live. Only
+	// changed while stopped; the slider seeks through replaySeek.
+	private volatile TrajectoryReader replay;
+
+	// GL thread of the current or last run, joined before anything it reads
+	// is torn down.
+	private Thread renderThread;
+	private volatile int replaySeek = -1;
+	private long replayFrame = 0;
+
 	public PlanetRenderer() {
 		modes.add(mode2D);
 		modes.add(mode3D);
+		engine2D.setBounds(WIDTH, HEIGHT);
+
+		// Trails are recorded per rendered frame from the snapshots.
+		engine2D.setRecordTrails(false);
+		engine3D.setRecordTrails(false);
 		initialiseObjects();
 	}
 
 	public void start() {
 		System.out.println("Starting simulation");
 		if (running) return;
+		// The last run may still be tearing down its window.
+		joinRenderThread();
 		running = true;
-		new Thread(this::run).start();
+		// A replay only needs the render thread.
+		if (replay == null) getActiveRunner().start();
+		renderThread = new Thread(this::run, "render");
+		renderThread.start();
 	}
 
 	public void stop() {
 		System.out.println("Stopping simulation");
 		running = false;
+		joinRenderThread();
+		runner2D.stop();
+		runner3D.stop();
+	}
+
+	// The render thread only posts to Swing with invokeLater, so the EDT can
+	// wait for it.
+	private void joinRenderThread() {
+		if (renderThread == null) return;
+		try {
+			renderThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		renderThread = null;
 	}
 
 	public void reset() {
+		// A reset restarts the step count, which a recording must not see.
+		if (isRecording()) {
+			System.out.println("Stop recording before resetting");
+			return;
+		}
 		System.out.println("Resetting simulation");
-		objects2D.clear();
-		objects3D.clear();
 		initialiseObjects();
 	}
 
+	public void saveCheckpoint() {
+		if (running) {
+			System.out.println("Stop the simulation before saving");
+			return;
+		}
+
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+		Path path = chooser.getSelectedFile().toPath();
+		SimulationEngine engine = renderingMode == 0 ? engine2D : engine3D;
+		try {
+			Checkpoint.save(engine, path);
+			System.out.println("Saved checkpoint to " + path);
+		} catch (IOException e) {
+			System.out.println("Could not save checkpoint: " + e.getMessage());
+		}
+	}
+
+	public void saveTimings() {
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+		Path path = chooser.getSelectedFile().toPath();
+		try {
+			TimingReport.writeCsv(path);
+			System.out.println("Saved timings to " + path);
+		} catch (IOException e) {
+			System.out.println("Could not save timings: " + e.getMessage());
+		}
+	}
+
+	public void chooseScenario() {
+		if (running) {
+			System.out.println("Stop the simulation before loading");
+			return;
+		}
+		if (isRecording()) {
+			System.out.println("Stop recording before loading");
+			return;
+		}
+
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+		loadScenario(chooser.getSelectedFile().toPath());
+	}
+
+	// Loads a CSV scenario or a saved checkpoint, see ScenarioLoader.
+	public void loadScenario(Path path) {
+		try {
+			// Switch to the mode the scenario is for.
+			int mode = ScenarioLoader.readDimensions(path) == 3 ? 1 : 0;
+			SimulationEngine engine = mode == 0 ? engine2D : engine3D;
+			long start = System.nanoTime();
+			ScenarioLoader.load(engine, path);
+			(mode == 0 ? runner2D : runner3D).publish();
+
+			setRenderingMode(mode);
+			mode2D.setSelected(mode == 0);
+			mode3D.setSelected(mode == 1);
+			System.out.printf("Loaded %d bodies from %s in %.0f ms%n", engine.getBodyCount(), path, (System.nanoTime() - start) / 1e6);
+		} catch (IOException e) {
+			System.out.println("Could not load scenario: " + e.getMessage());
+		}
+	}
+
+	private boolean isRecording() {
+		return runner2D.getRecorder() != null || runner3D.getRecorder() != null;
+	}
+
+	public void toggleRecording() {
+		SimulationRunner runner = getActiveRunner();
+		boolean recording = runner.getRecorder() != null;
+		if (recordCheckBox.isSelected() == recording) return;
+
+		if (running) {
+			System.out.println("Stop the simulation before changing recording");
+			recordCheckBox.setSelected(recording);
+			return;
+		}
+		if (recording) {
+			runner.setRecorder(null);
+			System.out.println("Recording stopped");
+			return;
+		}
+
+		JFileChooser chooser = new JFileChooser();
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+			recordCheckBox.setSelected(false);
+			return;
+		}
+
+		Path path = chooser.getSelectedFile().toPath();
+		try {
+			runner.setRecorder(new TrajectoryRecorder(path, renderingMode == 1));
+			System.out.println("Recording to " + path);
+		} catch (IOException e) {
+			System.out.println("Could not start recording: " + e.getMessage());
+			recordCheckBox.setSelected(false);
+		}
+	}
+
+	public void toggleReplay() {
+		if (running) {
+			System.out.println("Stop the simulation before switching replay");
+			return;
+		}
+
+		if (replay != null) {
+			// A replay that reached its end stops the render thread by
+			// itself, which may still be reading.
+			joinRenderThread();
+			try {
+				replay.close();
+			} catch (IOException e) {
+				System.out.println("Could not close replay: " + e.getMessage());
+			}
+			replay = null;
+			replayButton.setText("Replay");
+			replaySlider.setEnabled(false);
+			replayStepField.setEnabled(false);
+			replayStepLabel.setText("");
+			return;
+		}
+
+		JFileChooser chooser = new JFileChooser();
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+		Path path = chooser.getSelectedFile().toPath();
+		try {
+			TrajectoryReader reader = new TrajectoryReader(path);
+			if (reader.getFrameCount() == 0) {
+				System.out.println("Recording is empty");
+				reader.close();
+				return;
+			}
+
+			int mode = reader.isThreeDimensional() ? 1 : 0;
+			setRenderingMode(mode);
+			mode2D.setSelected(mode == 0);
+			mode3D.setSelected(mode == 1);
+
+			replayFrame = 0;
+			replay = reader;
+			replaySlider.setMaximum(reader.getFrameCount() - 1);
+			replaySlider.setValue(0);
+			replaySlider.setEnabled(true);
+			replayStepField.setEnabled(true);
+			showReplayStep();
+			replayButton.setText("Live");
+			System.out.println("Replaying " + reader.getFrameCount() + " frames from " + path);
+		} catch (IOException e) {
+			System.out.println("Could not open recording: " + e.getMessage());
+		}
+	}
+
+	// Step of the frame under the slider.
+	private void showReplayStep() {
+		TrajectoryReader reader = replay;
+		replayStepLabel.setText(reader != null ? "Step " + reader.getStep(replaySlider.getValue()) : "");
+	}
+
+	// Seeks the replay to the last frame at or before the typed step.
+	private void seekReplayStep() {
+		TrajectoryReader reader = replay;
+		if (reader == null) return;
+		try {
+			long step = Long.parseLong(replayStepField.getText().trim());
+			replaySlider.setValue(reader.findFrame(step));
+		} catch (NumberFormatException e) {
+			System.out.println("Not a step number: " + replayStepField.getText());
+		}
+	}
+
 	public void run() {
 		init();
 		render();
+		trailRenderer.release();
+		SphereMesh.releaseAll();
+		DiscMesh.releaseAll();
+		MaterialState.invalidate();
 		glfwFreeCallbacks(window);
 		glfwDestroyWindow(window);
 		glfwTerminate();
@@ -168,16 +453,10 @@ public class PlanetRenderer {
 				
 			}
 
-			// Set up the projection matrix
+			// Set up the projection matrix, kept for culling as well.
 			glMatrixMode(GL_PROJECTION);
-			glLoadIdentity();
-			float aspect = (float) WIDTH / HEIGHT;
-			float fov = 90.0f; // Field of view
-			float zNear = 0.1f; // Near clipping plane
-			float zFar = 100000.0f; // Far clipping plane
-			float top = (float) Math.tan(Math.toRadians(fov / 2.0)) * zNear;
-			float right = top * aspect;
-			glFrustum(-right, right, -top, top, zNear, zFar);
+			projectionMatrix = Camera3D.getProjectionMatrix((float) WIDTH / HEIGHT);
+			glLoadMatrixf(projectionMatrix);
 			glMatrixMode(GL_MODELVIEW);
 			glLoadIdentity();
 
@@ -235,24 +514,54 @@ public class PlanetRenderer {
 		}
 		if (keyStates[GLFW_KEY_DOWN]) { // Increase speed
 			camera.decreaseSpeed();
-			cameraSpeedLabel.setText("Camera Speed: " + camera.getCameraSpeed());
-			frame.pack();
+			showCameraSpeed();
 		}
 		if (keyStates[GLFW_KEY_UP]) { // Decrease speed
 			camera.increaseSpeed();
-			cameraSpeedLabel.setText("Camera Speed: " + camera.getCameraSpeed());
-			frame.pack();
+			showCameraSpeed();
 		}
 	}
 
+	// Called from the render thread, Swing is only touched on the EDT.
+	private void showCameraSpeed() {
+		String text = "Camera Speed: " + camera.getCameraSpeed();
+		SwingUtilities.invokeLater(() -> {
+			cameraSpeedLabel.setText(text);
+			frame.pack();
+		});
+	}
+
 	private void render() {
 
 		System.out.println("Starting rendering loop");
+		long frames = 0;
+		long lastStep = -1;
+		TrajectoryReader reader = replay;
+		Snapshot replayed = null;
 
 		// Run until escape key is pressed.
 		while (running) {
-			if (lightingEnabled) {
-				float[] lightPosition = {(float) objects3D.get(0).getPositionX(), (float) objects3D.get(0).getPositionY(), (float) objects3D.get(0).getPositionZ(), 1.0f};
+			frameTimer.begin();
+
+			// Latest physics state, never blocks on the simulation thread.
+			Snapshot snapshot;
+			if (reader != null) {
+				replayed = nextReplayFrame(reader, replayed);
+				if (replayed == null) {
+					running = false;
+					break;
+				}
+				snapshot = replayed;
+			} else {
+				snapshot = getActiveRunner().getSnapshots().acquire();
+			}
+			if (snapshot.getStep() != lastStep) {
+				recordTrails(snapshot);
+				lastStep = snapshot.getStep();
+			}
+
+			if (lightingEnabled && snapshot.getCount() > 0) {
+				float[] lightPosition = {(float) snapshot.getX()[0], (float) snapshot.getY()[0], (float) snapshot.getZ()[0], 1.0f};
 				glLightfv(GL_LIGHT0, GL_POSITION, lightPosition);
 			}
 	
@@ -261,97 +570,213 @@ public class PlanetRenderer {
 			glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 			glLoadIdentity();
 
-			if (renderingMode == 0) {
-				// Update 2D physics.
-				for (Body p1 : objects2D) {
-					for (Body p2 : objects2D) {
-						if (p1 == p2) continue;
+			if (renderingMode == 1) {
 
-						double dx = ((Planet2D) p2).getPositionX() - ((Planet2D) p1).getPositionX();
-						double dy = ((Planet2D) p2).getPositionY() - ((Planet2D) p1).getPositionY();
+				// Set the modelview matrix
+				glMatrixMode(GL_MODELVIEW);
+				glLoadIdentity();
+	
+				// Load the view matrix, the culler uses the same one
+				float[] viewMatrix = camera.getViewMatrix();
+				glLoadMatrixf(viewMatrix);
+				viewCuller.update(projectionMatrix, viewMatrix, HEIGHT);
+			}
 
-						double distance = Math.sqrt(dx * dx + dy * dy);
-						if (distance <= ((Planet2D) p1).getRadius() + ((Planet2D) p2).getRadius()) {
-							p1.resolveCollision(p2);
-							continue;
-						}
-						distance *= 6e5;
+			drawTimer.begin();
+			drawSnapshot(snapshot);
+			drawTimer.end();
 
-						double directionX = dx / distance;
-						double directionY = dy / distance;
+			trailTimer.begin();
+			trailRenderer.draw(snapshot.getBodies(), snapshot.getCount(), renderingMode == 1 ? viewCuller : null);
+			trailTimer.end();
 
-						double force = G * ((Planet2D) p1).getMass() * ((Planet2D) p2).getMass() / (distance * distance);
-						double acc = force / ((Planet2D) p1).getMass();
-						((Planet2D) p1).setVelocityX(((Planet2D) p1).getVelocityX() + acc * directionX);
-						((Planet2D) p1).setVelocityY(((Planet2D) p1).getVelocityY() + acc * directionY);
-					}
+			swapTimer.begin();
+			glfwSwapBuffers(window);
+			swapTimer.end();
+			glfwPollEvents();
+			frameTimer.end();
 
-					p1.updatePosition();
-					p1.draw();
-					p1.drawTrail();
-				
-					((Planet2D) p1).checkBorderCollision(WIDTH, HEIGHT);
+			// Refresh the force error readout about once a second.
+			if (++frames % 60 == 0) {
+				updateErrorLabel();
+			}
+		}
+	}
+
+	// Moves the replay on by the steps-per-frame setting, holding on the last
+	// frame. A seek from the slider clears the trails drawn so far.
+	private Snapshot nextReplayFrame(TrajectoryReader reader, Snapshot previous) {
+		int seek = replaySeek;
+		if (seek >= 0) {
+			replaySeek = -1;
+			replayFrame = seek;
+			if (previous != null) {
+				for (int i = 0; i < previous.getCount(); i++) {
+					previous.getBodies()[i].getTrail().clear();
 				}
+			}
+		} else if (previous != null) {
+			replayFrame += getActiveRunner().getStepsPerFrame();
+		}
+		replayFrame = Math.min(replayFrame, reader.getFrameCount() - 1);
 
-			} else if (renderingMode == 1) {
+		try {
+			return reader.read((int) replayFrame);
+		} catch (IOException e) {
+			System.out.println("Replay stopped: " + e.getMessage());
+			return null;
+		}
+	}
 
+	private void drawSnapshot(Snapshot snapshot) {
+		Body[] bodies = snapshot.getBodies();
+		double[] x = snapshot.getX();
+		double[] y = snapshot.getY();
+		double[] z = snapshot.getZ();
+		double[] radius = snapshot.getRadius();
 
-				// Set the modelview matrix
-				glMatrixMode(GL_MODELVIEW);
-				glLoadIdentity();
-	
-				// Load the view matrix
-				FloatBuffer viewMatrix = camera.createViewMatrix();
-				glLoadMatrixf(viewMatrix);
+		if (renderingMode != 1) {
+			for (int i = 0; i < snapshot.getCount(); i++) {
+				bodies[i].drawAt(x[i], y[i], z[i], radius[i]);
+			}
+			return;
+		}
 
-				// // Update 3D physics.
-				for (Body p1 : objects3D) {
-					for (Body p2 : objects3D) {
-						if (p1 == p2) continue;
+		// Skip bodies outside the frustum, lower the sphere resolution with
+		// screen size and batch the ones under a pixel or so into points.
+		for (int i = 0; i < snapshot.getCount(); i++) {
+			if (!viewCuller.isVisible(x[i], y[i], z[i], radius[i])) continue;
 
-						double dx = ((Planet3D) p2).getPositionX() - ((Planet3D) p1).getPositionX();
-						double dy = ((Planet3D) p2).getPositionY() - ((Planet3D) p1).getPositionY();
-						double dz = ((Planet3D) p2).getPositionZ() - ((Planet3D) p1).getPositionZ();
+			int resolution = viewCuller.resolution(x[i], y[i], z[i], radius[i]);
+			if (resolution == ViewCuller.SPRITE) {
+				Body body = bodies[i];
+				pointSprites.add(x[i], y[i], z[i], body instanceof Planet2D ? ((Planet2D) body).getColor() : Colors.WHITE);
+			} else {
+				bodies[i].drawAt(x[i], y[i], z[i], radius[i], resolution);
+			}
+		}
+		pointSprites.draw();
+	}
 
-						double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
-						if (distance <= ((Planet3D) p1).getRadius() + ((Planet3D) p2).getRadius()) {
-							p1.resolveCollision(p2);
-							continue;
-						}
-						distance *= 6e5;
+	private void recordTrails(Snapshot snapshot) {
+		Body[] bodies = snapshot.getBodies();
+		double[] x = snapshot.getX();
+		double[] y = snapshot.getY();
+		double[] z = snapshot.getZ();
 
-						double directionX = dx / distance;
-						double directionY = dy / distance;
-						double directionZ = dz / distance;
+		for (int i = 0; i < snapshot.getCount(); i++) {
+			bodies[i].getTrail().add(x[i], y[i], z[i]);
+		}
+	}
 
-						double force = G * ((Planet3D) p1).getMass() * ((Planet3D) p2).getMass() / (distance * distance);
-						double acc = force / ((Planet3D) p1).getMass();
-						((Planet3D) p1).setVelocityX(((Planet3D) p1).getVelocityX() + acc * directionX);
-						((Planet3D) p1).setVelocityY(((Planet3D) p1).getVelocityY() + acc * directionY);
-						((Planet3D) p1).setVelocityZ(((Planet3D) p1).getVelocityZ() + acc * directionZ);
-					}
-					p1.updatePosition();
-					p1.draw();
-					p1.drawTrail();
-				}
+	private SimulationRunner getActiveRunner() {
+		return renderingMode == 0 ? runner2D : runner3D;
+	}
+
+	private void applySolver() {
+		errorLabel.setText("");
+
+		if (solverBox.getSelectedIndex() == 0) {
+			setSolvers(new DirectSumSolver(), new DirectSumSolver());
+			return;
+		}
+		if (solverBox.getSelectedIndex() == 1) {
+			// One pool shared by both engines, only one of them runs at a time.
+			int threads = (Integer) threadsSpinner.getValue();
+			ParallelDirectSumSolver previous = parallelSolver;
+			if (previous == null || previous.getParallelism() != threads) {
+				parallelSolver = new ParallelDirectSumSolver(threads);
 			}
+			setSolvers(parallelSolver, parallelSolver, previous != parallelSolver ? previous : null);
+			return;
+		}
+		if (solverBox.getSelectedIndex() == 3) {
+			setSolvers(new VectorDirectSumSolver(), new VectorDirectSumSolver());
+			return;
+		}
+		if (solverBox.getSelectedIndex() >= 4) {
+			// Each engine gets its own grid, sized for its dimensions.
+			boolean shortRange = solverBox.getSelectedIndex() == 5;
+			setSolvers(new ParticleMeshSolver(false, shortRange), new ParticleMeshSolver(true, shortRange));
+			return;
+		}
 
-			glfwSwapBuffers(window);
-			glfwPollEvents();
+		double theta = (Double) thetaSpinner.getValue();
+		BarnesHutSolver solver2D = new BarnesHutSolver(false, theta);
+		BarnesHutSolver solver3D = new BarnesHutSolver(true, theta);
+		solver2D.setMeasureError(errorCheckBox.isSelected());
+		solver3D.setMeasureError(errorCheckBox.isSelected());
+		setSolvers(solver2D, solver3D);
+	}
+
+	private void setSolvers(GravitySolver solver2D, GravitySolver solver3D) {
+		setSolvers(solver2D, solver3D, null);
+	}
+
+	// Engine changes go through the runners, which apply them between steps.
+	// A retired parallel solver's pool is shut down once both engines have
+	// swapped it out.
+	private void setSolvers(GravitySolver solver2D, GravitySolver solver3D, ParallelDirectSumSolver retired) {
+		AtomicInteger pending = new AtomicInteger(2);
+		runner2D.execute(engine -> {
+			engine.setSolver(solver2D);
+			if (pending.decrementAndGet() == 0 && retired != null) retired.shutdown();
+		});
+		runner3D.execute(engine -> {
+			engine.setSolver(solver3D);
+			if (pending.decrementAndGet() == 0 && retired != null) retired.shutdown();
+		});
+	}
+
+	private void applyIntegrator() {
+		int index = integratorBox.getSelectedIndex();
+		runner2D.execute(engine -> engine.setIntegrator(createIntegrator(index)));
+		runner3D.execute(engine -> engine.setIntegrator(createIntegrator(index)));
+	}
+
+	private static Integrator createIntegrator(int index) {
+		switch (index) {
+			case 1: return new LeapfrogIntegrator();
+			case 2: return new VelocityVerletIntegrator();
+			case 3: return new YoshidaIntegrator();
+			case 4: return new RungeKuttaIntegrator();
+			case 5: return new BlockTimestepIntegrator();
+			default: return new EulerIntegrator();
 		}
 	}
 
+	private void updateErrorLabel() {
+		SimulationEngine engine = renderingMode == 0 ? engine2D : engine3D;
+		if (engine.getSolver() instanceof ParticleMeshSolver) {
+			ParticleMeshSolver solver = (ParticleMeshSolver) engine.getSolver();
+			String text = solver.isUsingDirectSum()
+					? "Direct sum below " + solver.getDirectLimit() + " bodies"
+					: "";
+			SwingUtilities.invokeLater(() -> errorLabel.setText(text));
+			return;
+		}
+		if (!(engine.getSolver() instanceof BarnesHutSolver)) return;
+
+		BarnesHutSolver solver = (BarnesHutSolver) engine.getSolver();
+		String text = solver.isMeasuringError()
+				? String.format("Error rms %.2e max %.2e", solver.getRmsError(), solver.getMaxError())
+				: "";
+		// Called from the render thread, Swing is only touched on the EDT.
+		SwingUtilities.invokeLater(() -> errorLabel.setText(text));
+	}
+
 	public static boolean getLightingEnabled() {
 		return lightingEnabled;
 	}
 
+	// Replaces both engines' bodies with the default scenes, between steps
+	// when an engine is running.
 	public void initialiseObjects() {
 		// Earth and Sun.
-		objects2D.add(new Planet2D(centerX, centerY, 20, 1.98e30, Colors.YELLOW));
-		objects2D.add(new Planet2D(centerX, centerY + 100, 10, 5.97e24, Colors.BLUE));
-		objects2D.add(new Planet2D(centerX, centerY + 200, 10, 5.97e24, Colors.GREEN));
-		objects2D.get(1).setVelocityX(2);
-		objects2D.get(2).setVelocityX(1);
+		runner2D.execute(engine -> {
+			engine.clear();
+			Scenes.addSunAndPlanets2D(engine, centerX, centerY);
+		});
 
 		// Stable orbit.
 		// planets.add(new Planet(100, 100, 10, 1e20, Colors.PURPLE));
@@ -367,15 +792,13 @@ public class PlanetRenderer {
 		// }
 
 		// 3D planets.
-		objects3D.add(new Planet3D(0, 0, 0, 20, 1.98e30, Colors.YELLOW, true));
-		objects3D.add(new Planet3D(0, 100, 0, 10, 5.97e24, Colors.GREEN, false));
-		objects3D.add(new Planet3D(100, 0, 100, 10, 5.97e24, Colors.DARK_GRAY, false));
-
-		objects3D.get(1).setVelocityX(2);
-		objects3D.get(2).setVelocityX(2);
+		runner3D.execute(engine -> {
+			engine.clear();
+			Scenes.addSunAndPlanets3D(engine);
+		});
 
 		// COOL SUN MOVING EVERYTHING ORBITING IT
-		// objects3D.get(0).setVelocityZ(1.5);
+		// engine3D.getBodies().get(0).setVelocityZ(1.5);
 
 		// Scaled down real solar system.
 		// Sun
@@ -416,6 +839,29 @@ public class PlanetRenderer {
 		panel.setBackground(new Color(0, 0, 51));
 
 		cameraSpeedLabel.setForeground(Color.WHITE);		
+		timingLabel.setForeground(Color.WHITE);
+		timingLabel.setToolTipText("Phase times in ms over the last " + Phase.WINDOW + " samples");
+		errorLabel.setForeground(Color.WHITE);
+		stepsLabel.setForeground(Color.WHITE);
+		stepsSpinner.setToolTipText("Simulation steps per displayed frame");
+		dtLabel.setForeground(Color.WHITE);
+		dtSpinner.setToolTipText("Timestep per simulation step");
+		integratorBox.setFocusable(false);
+
+		solverBox.setFocusable(false);
+		thetaSpinner.setToolTipText("Barnes-Hut opening angle");
+		threadsSpinner.setToolTipText("Threads for the parallel direct sum");
+
+		errorCheckBox.setBackground(new Color(0, 0, 51));
+		errorCheckBox.setForeground(Color.WHITE);
+		errorCheckBox.setFocusable(false);
+		errorCheckBox.setBorderPainted(false);
+
+		mergeCheckBox.setBackground(new Color(0, 0, 51));
+		mergeCheckBox.setForeground(Color.WHITE);
+		mergeCheckBox.setFocusable(false);
+		mergeCheckBox.setBorderPainted(false);
+		mergeCheckBox.setToolTipText("Colliding bodies merge into one instead of bouncing");
 
 		lightingCheckBox.setBackground(new Color(0, 0, 51));
 		lightingCheckBox.setForeground(Color.WHITE);
@@ -423,6 +869,11 @@ public class PlanetRenderer {
 		lightingCheckBox.setBorderPainted(false);
 		lightingCheckBox.setSelected(false);
 
+		trailLinesCheckBox.setBackground(new Color(0, 0, 51));
+		trailLinesCheckBox.setForeground(Color.WHITE);
+		trailLinesCheckBox.setFocusable(false);
+		trailLinesCheckBox.setBorderPainted(false);
+
 		startButton.setPreferredSize(new Dimension(100, 50));
 		startButton.setBorderPainted(false);
 		startButton.setFocusable(false);
@@ -441,6 +892,45 @@ public class PlanetRenderer {
 		resetButton.setBackground(new Color(0, 0, 102));
 		resetButton.setForeground(Color.WHITE);
 
+		saveButton.setPreferredSize(new Dimension(100, 50));
+		saveButton.setBorderPainted(false);
+		saveButton.setFocusable(false);
+		saveButton.setBackground(new Color(0, 0, 102));
+		saveButton.setForeground(Color.WHITE);
+
+		loadButton.setPreferredSize(new Dimension(100, 50));
+		loadButton.setBorderPainted(false);
+		loadButton.setFocusable(false);
+		loadButton.setBackground(new Color(0, 0, 102));
+		loadButton.setForeground(Color.WHITE);
+
+		recordCheckBox.setBackground(new Color(0, 0, 51));
+		recordCheckBox.setForeground(Color.WHITE);
+		recordCheckBox.setFocusable(false);
+		recordCheckBox.setBorderPainted(false);
+		recordCheckBox.setToolTipText("Append every simulation step to a recording directory");
+
+		replayButton.setPreferredSize(new Dimension(100, 50));
+		replayButton.setBorderPainted(false);
+		replayButton.setFocusable(false);
+		replayButton.setBackground(new Color(0, 0, 102));
+		replayButton.setForeground(Color.WHITE);
+
+		replaySlider.setBackground(new Color(0, 0, 51));
+		replaySlider.setFocusable(false);
+		replaySlider.setEnabled(false);
+		replaySlider.setToolTipText("Replay position");
+		replayStepLabel.setForeground(Color.WHITE);
+		replayStepField.setEnabled(false);
+		replayStepField.setToolTipText("Go to step");
+
+		timingButton.setPreferredSize(new Dimension(100, 50));
+		timingButton.setBorderPainted(false);
+		timingButton.setFocusable(false);
+		timingButton.setBackground(new Color(0, 0, 102));
+		timingButton.setForeground(Color.WHITE);
+		timingButton.setToolTipText("Save the phase timings as CSV");
+
 		mode2D.setPreferredSize(new Dimension(100, 50));
 		mode2D.setFocusable(false);
 		mode2D.setBorderPainted(false);
@@ -456,10 +946,31 @@ public class PlanetRenderer {
 		panel.add(startButton);
 		panel.add(stopButton);
 		panel.add(resetButton);
+		panel.add(saveButton);
+		panel.add(loadButton);
+		panel.add(recordCheckBox);
+		panel.add(replayButton);
+		panel.add(replaySlider);
+		panel.add(replayStepLabel);
+		panel.add(replayStepField);
 		panel.add(mode2D);
 		panel.add(mode3D);
 		panel.add(lightingCheckBox);
+		panel.add(trailLinesCheckBox);
 		panel.add(cameraSpeedLabel);
+		panel.add(timingLabel);
+		panel.add(timingButton);
+		panel.add(solverBox);
+		panel.add(thetaSpinner);
+		panel.add(threadsSpinner);
+		panel.add(errorCheckBox);
+		panel.add(errorLabel);
+		panel.add(mergeCheckBox);
+		panel.add(stepsLabel);
+		panel.add(stepsSpinner);
+		panel.add(integratorBox);
+		panel.add(dtLabel);
+		panel.add(dtSpinner);
 
 		frame.add(panel);
 
@@ -480,6 +991,11 @@ public class PlanetRenderer {
 			}
 		});
 
+		trailLinesCheckBox.addItemListener(e -> trailRenderer.setLineStrips(trailLinesCheckBox.isSelected()));
+
+		timingButton.addActionListener(e -> saveTimings());
+		timingRefresh.start();
+
 		startButton.addActionListener(e -> {
 			start();
 			mode2D.setEnabled(false);
@@ -491,6 +1007,36 @@ public class PlanetRenderer {
 			mode3D.setEnabled(true);
 		});
 		resetButton.addActionListener(e -> reset());
+		saveButton.addActionListener(e -> saveCheckpoint());
+		loadButton.addActionListener(e -> chooseScenario());
+		recordCheckBox.addItemListener(e -> toggleRecording());
+		replayButton.addActionListener(e -> toggleReplay());
+		replaySlider.addChangeListener(e -> {
+			replaySeek = replaySlider.getValue();
+			showReplayStep();
+		});
+		replayStepField.addActionListener(e -> seekReplayStep());
+
+		solverBox.addActionListener(e -> applySolver());
+		thetaSpinner.addChangeListener(e -> applySolver());
+		threadsSpinner.addChangeListener(e -> applySolver());
+		errorCheckBox.addItemListener(e -> applySolver());
+		mergeCheckBox.addItemListener(e -> {
+			boolean merge = mergeCheckBox.isSelected();
+			runner2D.execute(engine -> engine.setMergeCollisions(merge));
+			runner3D.execute(engine -> engine.setMergeCollisions(merge));
+		});
+		stepsSpinner.addChangeListener(e -> {
+			int steps = (Integer) stepsSpinner.getValue();
+			runner2D.setStepsPerFrame(steps);
+			runner3D.setStepsPerFrame(steps);
+		});
+		integratorBox.addActionListener(e -> applyIntegrator());
+		dtSpinner.addChangeListener(e -> {
+			double dt = (Double) dtSpinner.getValue();
+			runner2D.setDt(dt);
+			runner3D.setDt(dt);
+		});
 
 		mode2D.setSelected(true);
 		mode2D.addActionListener(e -> {
@@ -513,5 +1059,10 @@ public class PlanetRenderer {
 	public static void main(String[] args) {
 		PlanetRenderer renderer = new PlanetRenderer();
 		renderer.initUI();
+
+		// Optional scenario file, CSV or a saved checkpoint.
+		if (args.length > 0) {
+			renderer.loadScenario(Paths.get(args[0]));
+		}
 	}
 }
@@ -0,0 +1,289 @@
+package com.xacobeu;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Simulation.Scenes;
+import com.xacobeu.Simulation.SimulationEngine;
+
+// Runs the default scene over a grid of masses, starting speeds and distance
+// scales. Every run builds its own engine, solver and integrator, so runs
+// share nothing and are spread over a fixed pool with one thread per core.
+// Summaries are written to CSV in the order runs finish.
+public class PlanetSweep {
+	private static final String USAGE = String.join("\n",
+			"Usage: PlanetSweep [options]",
+			"  --sun-mass LIST        sun masses (default 1.98e30)",
+			"  --planet-mass LIST     planet masses (default 5.97e24)",
+			"  --velocity LIST        multipliers of the planets' starting speeds (default 1)",
+			"  --distance-scale LIST  metres per screen unit (default 6e5)",
+			"  --steps N              steps per run (default 10000)",
+			"  --dt X                 timestep (default 1.0)",
+			"  --solver NAME          direct, barnes-hut, simd, pm or p3m (default direct)",
+			"  --theta X              Barnes-Hut opening angle (default 0.5)",
+			"  --integrator NAME      euler, leapfrog, verlet, yoshida, rk4 or block (default euler)",
+			"  --3d                   sweep the 3D scene instead of the 2D one",
+			"  --threads N            runs at once (default one per core)",
+			"  --output FILE          summary CSV (default sweep.csv)",
+			"A LIST is comma separated values, or from:to:count for evenly spaced values.");
+
+	private double[] sunMasses = {Scenes.SUN_MASS};
+	private double[] planetMasses = {Scenes.EARTH_MASS};
+	private double[] velocities = {1.0};
+	private double[] distanceScales = {SimulationEngine.DISTANCE_SCALE};
+	private long steps = 10000;
+	private double dt = 1.0;
+	private String solverName = "direct";
+	private double theta = 0.5;
+	private String integratorName = "euler";
+	private boolean threeDimensional = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Path output = Paths.get("sweep.csv");
+
+	private static class Run {
+		final int index;
+		final double sunMass;
+		final double planetMass;
+		final double velocity;
+		final double distanceScale;
+
+		Run(int index, double sunMass, double planetMass, double velocity, double distanceScale) {
+			this.index = index;
+			this.sunMass = sunMass;
+			this.planetMass = planetMass;
+			this.velocity = velocity;
+			this.distanceScale = distanceScale;
+		}
+	}
+
+	private static class Result {
+		Run run;
+		double seconds;
+		double drift;
+		int escaped;
+		String error = "";
+	}
+
+	public static void main(String[] args) {
+		PlanetSweep sweep = new PlanetSweep();
+		try {
+			sweep.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		try {
+			sweep.run();
+		} catch (IOException e) {
+			System.err.println("Sweep failed: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.exit(1);
+		}
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+				case "--sun-mass": sunMasses = parseList(PlanetBatch.value(args, ++i, arg)); break;
+				case "--planet-mass": planetMasses = parseList(PlanetBatch.value(args, ++i, arg)); break;
+				case "--velocity": velocities = parseList(PlanetBatch.value(args, ++i, arg)); break;
+				case "--distance-scale": distanceScales = parseList(PlanetBatch.value(args, ++i, arg)); break;
+				case "--steps": steps = Long.parseLong(PlanetBatch.value(args, ++i, arg)); break;
+				case "--dt": dt = Double.parseDouble(PlanetBatch.value(args, ++i, arg)); break;
+				case "--solver": solverName = PlanetBatch.value(args, ++i, arg); break;
+				case "--theta": theta = Double.parseDouble(PlanetBatch.value(args, ++i, arg)); break;
+				case "--integrator": integratorName = PlanetBatch.value(args, ++i, arg); break;
+				case "--3d": threeDimensional = true; break;
+				case "--threads": threads = Integer.parseInt(PlanetBatch.value(args, ++i, arg)); break;
+				case "--output": output = Paths.get(PlanetBatch.value(args, ++i, arg)); break;
+				default: throw new IllegalArgumentException("Unexpected argument " + arg);
+			}
+		}
+		if (steps < 0) throw new IllegalArgumentException("--steps must not be negative");
+		if (threads < 1) throw new IllegalArgumentException("--threads must be at least 1");
+
+		if (solverName.equals("parallel")) {
+			throw new IllegalArgumentException("Runs are already spread over every core, use a serial solver");
+		}
+		if (!Arrays.asList(PlanetBatch.SOLVERS).contains(solverName)) {
+			throw new IllegalArgumentException("Unknown solver " + solverName);
+		}
+		if (!Arrays.asList(PlanetBatch.INTEGRATORS).contains(integratorName)) {
+			throw new IllegalArgumentException("Unknown integrator " + integratorName);
+		}
+	}
+
+	// "a,b,c" or "from:to:count".
+	private static double[] parseList(String text) {
+		String[] range = text.split(":");
+		if (range.length == 3) {
+			double from = Double.parseDouble(range[0]);
+			double to = Double.parseDouble(range[1]);
+			int count = Integer.parseInt(range[2]);
+			if (count < 1) throw new IllegalArgumentException("Empty range " + text);
+
+			double[] values = new double[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = count == 1 ? from : from + (to - from) * i / (count - 1);
+			}
+			return values;
+		}
+
+		String[] parts = text.split(",");
+		double[] values = new double[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Double.parseDouble(parts[i].trim());
+		}
+		return values;
+	}
+
+	private List<Run> grid() {
+		List<Run> runs = new ArrayList<>();
+		for (double sunMass : sunMasses) {
+			for (double planetMass : planetMasses) {
+				for (double velocity : velocities) {
+					for (double distanceScale : distanceScales) {
+						runs.add(new Run(runs.size(), sunMass, planetMass, velocity, distanceScale));
+					}
+				}
+			}
+		}
+		return runs;
+	}
+
+	private void run() throws IOException, InterruptedException {
+		List<Run> runs = grid();
+		System.out.printf("Sweeping %d runs of %d steps on %d threads%n", runs.size(), steps, threads);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "sweep-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<Result> completed = new ExecutorCompletionService<>(pool);
+
+		// Keeps a couple of runs queued per thread instead of the whole grid.
+		Semaphore queued = new Semaphore(threads * 2);
+		Thread submitter = new Thread(() -> {
+			try {
+				for (Run run : runs) {
+					queued.acquire();
+					completed.submit(() -> simulate(run));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "sweep-submit");
+		submitter.setDaemon(true);
+		submitter.start();
+
+		long start = System.nanoTime();
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+			out.println("run,sun_mass,planet_mass,velocity_scale,distance_scale,steps,seconds,steps_per_s,energy_drift,escaped,error");
+			out.flush();
+
+			for (int done = 1; done <= runs.size(); done++) {
+				Result result;
+				try {
+					result = completed.take().get();
+				} catch (ExecutionException e) {
+					// simulate() catches its own failures.
+					throw new IllegalStateException(e.getCause());
+				}
+				queued.release();
+
+				Run run = result.run;
+				out.println(String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%d,%.4f,%.1f,%.3e,%d,%s",
+						run.index, run.sunMass, run.planetMass, run.velocity, run.distanceScale, steps,
+						result.seconds, result.seconds > 0 ? steps / result.seconds : 0,
+						result.drift, result.escaped, result.error));
+				out.flush();
+
+				if (!result.error.isEmpty()) {
+					System.out.println("Run " + run.index + " failed: " + result.error);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.printf(Locale.ROOT, "Wrote %s in %.1f s%n", output, (System.nanoTime() - start) / 1e9);
+	}
+
+	private Result simulate(Run run) {
+		Result result = new Result();
+		result.run = run;
+		try {
+			SimulationEngine engine = new SimulationEngine(threeDimensional);
+			engine.setRecordTrails(false);
+			engine.setTimed(false);
+			engine.setDistanceScale(run.distanceScale);
+			engine.setSolver(PlanetBatch.createSolver(solverName, threeDimensional, theta));
+			engine.setIntegrator(PlanetBatch.createIntegrator(integratorName));
+			if (threeDimensional) {
+				Scenes.addSunAndPlanets3D(engine, run.sunMass, run.planetMass, run.velocity);
+			} else {
+				Scenes.addSunAndPlanets2D(engine, PlanetRenderer.WIDTH / 2, PlanetRenderer.HEIGHT / 2,
+						run.sunMass, run.planetMass, run.velocity);
+			}
+
+			double startEnergy = engine.computeEnergy();
+			long start = System.nanoTime();
+			for (long step = 0; step < steps; step++) {
+				engine.step(dt);
+			}
+			result.seconds = (System.nanoTime() - start) / 1e9;
+			result.drift = (engine.computeEnergy() - startEnergy) / Math.abs(startEnergy);
+			result.escaped = countEscaped(engine);
+		} catch (RuntimeException e) {
+			result.error = String.valueOf(e).replace(',', ';');
+		}
+		return result;
+	}
+
+	// Planets whose two-body energy relative to the sun (body 0) is positive.
+	private static int countEscaped(SimulationEngine engine) {
+		BodyStore store = engine.getStore();
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] z = store.getZ();
+		double[] vx = store.getVelocityX();
+		double[] vy = store.getVelocityY();
+		double[] vz = store.getVelocityZ();
+		double[] mass = store.getMass();
+		double g = engine.getScaledG();
+
+		int escaped = 0;
+		for (int i = 1; i < store.size(); i++) {
+			double dx = x[i] - x[0];
+			double dy = y[i] - y[0];
+			double dz = z[i] - z[0];
+			double dvx = vx[i] - vx[0];
+			double dvy = vy[i] - vy[0];
+			double dvz = vz[i] - vz[0];
+			double kinetic = 0.5 * (dvx * dvx + dvy * dvy + dvz * dvz);
+			double potential = g * (mass[0] + mass[i]) / Math.sqrt(dx * dx + dy * dy + dz * dz);
+			if (kinetic > potential) escaped++;
+		}
+		return escaped;
+	}
+}
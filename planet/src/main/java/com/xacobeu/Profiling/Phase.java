@@ -0,0 +1,45 @@
+package com.xacobeu.Profiling;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Timed phases of a simulation step or a rendered frame. Each phase keeps
+// its most recent durations in a ring, so percentiles always describe the
+// last WINDOW samples. Recording is a clock read and an array store; the
+// ring is only sorted when someone asks for a summary.
+public enum Phase {
+    PHYSICS("Physics"),
+    COLLISIONS("Collisions"),
+    DRAW("Draw"),
+    TRAILS("Trails"),
+    SWAP("Swap"),
+    FRAME("Frame");
+
+    public static final int WINDOW = 1024;
+
+    private final String label;
+    private final long[] samples = new long[WINDOW];
+    private final AtomicLong count = new AtomicLong();
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    // Safe from several threads; a summary taken meanwhile may see a mix of
+    // old and new samples.
+    public void record(long nanos) {
+        long i = count.getAndIncrement();
+        samples[(int) (i % WINDOW)] = nanos;
+    }
+
+    public PhaseTimes summarize() {
+        int n = (int) Math.min(count.get(), WINDOW);
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        return new PhaseTimes(this, sorted);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
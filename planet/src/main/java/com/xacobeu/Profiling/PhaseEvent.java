@@ -0,0 +1,37 @@
+package com.xacobeu.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event for one timed phase. Only loaded when JFR is
+// present, see PhaseTimer.
+@Name("com.xacobeu.Phase")
+@Label("Simulation Phase")
+@Category("Planet Simulation")
+@Description("Time spent in one phase of a simulation step or rendered frame")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(PhaseEvent.class);
+
+    @Label("Phase")
+    String phase;
+
+    // Starts an event, or returns null when no recording wants it.
+    static PhaseEvent start(Phase phase) {
+        if (!TYPE.isEnabled()) return null;
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase.getLabel();
+        event.begin();
+        return event;
+    }
+
+    void finish() {
+        end();
+        if (shouldCommit()) commit();
+    }
+}
@@ -0,0 +1,44 @@
+package com.xacobeu.Profiling;
+
+// Times one phase at one call site, feeding the phase's rolling window and,
+// while a flight recording is running, a PhaseEvent. A timer is not thread
+// safe, so each thread that times a phase needs its own.
+public class PhaseTimer {
+    // JFR ships with Java 11 and later 8 updates, stay usable without it.
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    // Does nothing, shared since it has no state.
+    public static final PhaseTimer DISABLED = new PhaseTimer(null);
+
+    private final Phase phase;
+    private long started;
+    private PhaseEvent event;
+
+    public PhaseTimer(Phase phase) {
+        this.phase = phase;
+    }
+
+    public void begin() {
+        if (phase == null) return;
+        if (JFR_AVAILABLE) event = PhaseEvent.start(phase);
+        started = System.nanoTime();
+    }
+
+    public void end() {
+        if (phase == null) return;
+        phase.record(System.nanoTime() - started);
+        if (event != null) {
+            event.finish();
+            event = null;
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
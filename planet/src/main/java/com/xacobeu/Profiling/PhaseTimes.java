@@ -0,0 +1,45 @@
+package com.xacobeu.Profiling;
+
+// Percentiles of one phase's recent durations, in nanoseconds.
+public class PhaseTimes {
+    private final Phase phase;
+    private final int samples;
+    private final long median;
+    private final long p99;
+    private final long max;
+
+    PhaseTimes(Phase phase, long[] sorted) {
+        this.phase = phase;
+        this.samples = sorted.length;
+        this.median = percentile(sorted, 0.50);
+        this.p99 = percentile(sorted, 0.99);
+        this.max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+    }
+
+    // Nearest-rank percentile, 0 without samples.
+    private static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public long getMedian() {
+        return median;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
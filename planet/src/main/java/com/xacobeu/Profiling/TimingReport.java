@@ -0,0 +1,41 @@
+package com.xacobeu.Profiling;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Formats the rolling phase timings for the control panel and as CSV.
+public class TimingReport {
+    private TimingReport() {
+    }
+
+    // Small HTML table for a JLabel, times in milliseconds.
+    public static String toHtml() {
+        StringBuilder html = new StringBuilder("<html><table cellspacing=0 cellpadding=1>");
+        html.append("<tr><td></td><td>p50</td><td>p99</td><td>max</td></tr>");
+        for (Phase phase : Phase.values()) {
+            PhaseTimes times = phase.summarize();
+            html.append(String.format(Locale.ROOT, "<tr><td>%s</td><td>%.2f</td><td>%.2f</td><td>%.2f</td></tr>",
+                    phase.getLabel(), millis(times.getMedian()), millis(times.getP99()), millis(times.getMax())));
+        }
+        return html.append("</table></html>").toString();
+    }
+
+    public static void writeCsv(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println("phase,samples,p50_ms,p99_ms,max_ms");
+            for (Phase phase : Phase.values()) {
+                PhaseTimes times = phase.summarize();
+                out.println(String.format(Locale.ROOT, "%s,%d,%.6f,%.6f,%.6f", phase.getLabel(), times.getSamples(),
+                        millis(times.getMedian()), millis(times.getP99()), millis(times.getMax())));
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,156 @@
+package com.xacobeu.Rendering;
+
+import com.xacobeu.Bodies.TrailBuffer;
+
+// Screen-space simplification of one TrailBuffer. A point is kept only when
+// it lies at least the tolerance away from the last kept point, so the kept
+// count follows the trail's length in pixels rather than its history. New
+// points are filtered as they arrive and points that fall off the trail are
+// dropped from the front; the whole trail is only filtered again when the
+// tolerance level changes. Points are stored as floats, ready for upload.
+class DecimatedTrail {
+    private static final int INITIAL_POINTS = 64;
+
+    private final int dimensions;
+    private float[] points = new float[0];
+    private long[] sequence = new long[0];
+
+    // Ring of kept points, slot of the oldest and number kept.
+    private int start = 0;
+    private int size = 0;
+
+    // Raw points filtered so far, in TrailBuffer.getTotalAdded() terms.
+    private long consumed = 0;
+
+    // Points kept since the last rebuild, and a counter that changes when the
+    // whole ring has to be uploaded again.
+    private long added = 0;
+    private int generation = 0;
+
+    // Tolerance is 2^level world units, at most the requested tolerance.
+    private int level = Integer.MIN_VALUE;
+    private double tolerance2;
+    private double lastX, lastY, lastZ;
+
+    DecimatedTrail(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    void update(TrailBuffer trail, double tolerance) {
+        int newLevel = chooseLevel(tolerance);
+        long total = trail.getTotalAdded();
+        int rawSize = trail.size();
+        long pending = total - consumed;
+
+        if (newLevel != level || pending < 0) {
+            level = newLevel;
+            double step = Math.scalb(1.0, level);
+            tolerance2 = step * step;
+            start = 0;
+            size = 0;
+            added = 0;
+            generation++;
+            pending = rawSize;
+        }
+
+        // Points already overwritten in the raw ring are lost either way.
+        int first = rawSize - (int) Math.min(pending, rawSize);
+        long firstSequence = total - rawSize;
+        for (int i = first; i < rawSize; i++) {
+            consider(trail.getX(i), trail.getY(i), trail.getZ(i), firstSequence + i);
+        }
+        consumed = total;
+
+        // Drop kept points that are no longer part of the raw trail.
+        int capacity = getCapacity();
+        while (size > 0 && sequence[start] < firstSequence) {
+            start = start + 1 == capacity ? 0 : start + 1;
+            size--;
+        }
+    }
+
+    // Picks a finer level as soon as the tolerance shrinks, but waits for it
+    // to grow by half a level more before coarsening, so a body moving back
+    // and forth across a level boundary does not rebuild every frame.
+    private int chooseLevel(double tolerance) {
+        double exact = Math.log(Math.max(tolerance, Double.MIN_NORMAL)) / Math.log(2);
+        if (level == Integer.MIN_VALUE || exact < level || exact >= level + 1.5) {
+            return (int) Math.floor(exact);
+        }
+        return level;
+    }
+
+    private void consider(double x, double y, double z, long rawSequence) {
+        if (size > 0 || added > 0) {
+            double dx = x - lastX;
+            double dy = y - lastY;
+            double dz = z - lastZ;
+            if (dx * dx + dy * dy + dz * dz < tolerance2) return;
+        }
+
+        if (size == getCapacity()) grow();
+        int capacity = getCapacity();
+        int slot = start + size;
+        if (slot >= capacity) slot -= capacity;
+
+        int offset = slot * dimensions;
+        points[offset] = (float) x;
+        points[offset + 1] = (float) y;
+        if (dimensions == 3) points[offset + 2] = (float) z;
+        sequence[slot] = rawSequence;
+        size++;
+        added++;
+
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+    }
+
+    // Unrolls the ring into a larger array, so every slot moves.
+    private void grow() {
+        int capacity = getCapacity();
+        int grown = Math.max(INITIAL_POINTS, capacity * 2);
+        float[] newPoints = new float[grown * dimensions];
+        long[] newSequence = new long[grown];
+
+        int head = Math.min(size, capacity - start);
+        System.arraycopy(points, start * dimensions, newPoints, 0, head * dimensions);
+        System.arraycopy(points, 0, newPoints, head * dimensions, (size - head) * dimensions);
+        System.arraycopy(sequence, start, newSequence, 0, head);
+        System.arraycopy(sequence, 0, newSequence, head, size - head);
+
+        points = newPoints;
+        sequence = newSequence;
+        start = 0;
+        generation++;
+    }
+
+    // Raw ring storage, kept point i lives at slot (getStart() + i) % getCapacity().
+    float[] getPoints() {
+        return points;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return sequence.length;
+    }
+
+    int getDimensions() {
+        return dimensions;
+    }
+
+    long getAdded() {
+        return added;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+}
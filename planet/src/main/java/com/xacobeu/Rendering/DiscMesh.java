@@ -0,0 +1,63 @@
+package com.xacobeu.Rendering;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+
+// Unit disc as a triangle fan built once per resolution into a VBO.
+public class DiscMesh {
+    private static final Map<Integer, DiscMesh> cache = new HashMap<>();
+
+    private final int vertexBuffer;
+    private final int vertexCount;
+
+    public static DiscMesh get(int resolution) {
+        DiscMesh mesh = cache.get(resolution);
+        if (mesh == null) {
+            mesh = new DiscMesh(resolution);
+            cache.put(resolution, mesh);
+        }
+        return mesh;
+    }
+
+    // Deletes all cached meshes, call before the GL context goes away.
+    public static void releaseAll() {
+        for (DiscMesh mesh : cache.values()) {
+            glDeleteBuffers(mesh.vertexBuffer);
+        }
+        cache.clear();
+    }
+
+    private DiscMesh(int resolution) {
+        // Centre followed by resolution + 1 rim points closing the fan.
+        vertexCount = resolution + 2;
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(vertexCount * 2);
+        vertices.put(0.0f).put(0.0f);
+        for (int i = 0; i <= resolution; i++) {
+            double angle = 2.0 * Math.PI * ((double) i / resolution);
+            vertices.put((float) Math.cos(angle)).put((float) Math.sin(angle));
+        }
+        vertices.flip();
+
+        vertexBuffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    public void draw() {
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(2, GL_FLOAT, 0, 0L);
+
+        glDrawArrays(GL_TRIANGLE_FAN, 0, vertexCount);
+
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+}
@@ -0,0 +1,49 @@
+package com.xacobeu.Rendering;
+
+import static org.lwjgl.opengl.GL11.*;
+
+// Tracks the last colour and material sent to GL so bodies sharing a colour
+// do not re-issue glMaterial calls. Anything else that changes the current
+// colour must call invalidate().
+public class MaterialState {
+    private static final float[] EMISSIVE_AMBIENT = {0.2f, 0.2f, 0.2f, 1.0f};
+    private static final float[] EMISSIVE_SPECULAR = {1.0f, 1.0f, 1.0f, 1.0f};
+    private static final float[] NO_EMISSION = {0.0f, 0.0f, 0.0f, 1.0f};
+
+    private static float[] lastColor = null;
+    private static boolean lastEmissive = false;
+    private static boolean lastLighting = false;
+
+    private static final float[] opaque = new float[4];
+
+    public static void apply(float[] color, boolean emissive, boolean lighting) {
+        if (color == lastColor && emissive == lastEmissive && lighting == lastLighting) return;
+        lastColor = color;
+        lastEmissive = emissive;
+        lastLighting = lighting;
+
+        glColor3f(color[0], color[1], color[2]);
+        if (!lighting) return;
+
+        if (emissive) {
+            opaque[0] = color[0];
+            opaque[1] = color[1];
+            opaque[2] = color[2];
+            opaque[3] = 1.0f;
+
+            glMaterialfv(GL_FRONT, GL_AMBIENT, EMISSIVE_AMBIENT);
+            glMaterialfv(GL_FRONT, GL_DIFFUSE, opaque);
+            glMaterialfv(GL_FRONT, GL_SPECULAR, EMISSIVE_SPECULAR);
+            glMaterialfv(GL_FRONT, GL_EMISSION, opaque);
+        } else {
+            glMaterialfv(GL_FRONT, GL_EMISSION, NO_EMISSION);
+            glMaterialfv(GL_FRONT, GL_AMBIENT, color);
+            glMaterialfv(GL_FRONT, GL_DIFFUSE, color);
+            glMaterialfv(GL_FRONT, GL_SPECULAR, color);
+        }
+    }
+
+    public static void invalidate() {
+        lastColor = null;
+    }
+}
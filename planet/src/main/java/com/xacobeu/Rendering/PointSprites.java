@@ -0,0 +1,66 @@
+package com.xacobeu.Rendering;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+
+// Collects distant bodies during a frame and draws them as unlit points with
+// a single glDrawArrays call. Must be used from the GL thread.
+public class PointSprites {
+    private static final float POINT_SIZE = 2.0f;
+
+    private FloatBuffer vertices = BufferUtils.createFloatBuffer(3 * 1024);
+    private FloatBuffer colors = BufferUtils.createFloatBuffer(4 * 1024);
+    private int count = 0;
+
+    public void add(double x, double y, double z, float[] color) {
+        if (vertices.remaining() < 3) grow();
+        vertices.put((float) x).put((float) y).put((float) z);
+        colors.put(color, 0, 4);
+        count++;
+    }
+
+    public void draw() {
+        if (count == 0) return;
+
+        vertices.flip();
+        colors.flip();
+
+        boolean lighting = glIsEnabled(GL_LIGHTING);
+        if (lighting) glDisable(GL_LIGHTING);
+        glPointSize(POINT_SIZE);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+        glVertexPointer(3, GL_FLOAT, 0, vertices);
+        glColorPointer(4, GL_FLOAT, 0, colors);
+
+        glDrawArrays(GL_POINTS, 0, count);
+
+        glDisableClientState(GL_COLOR_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glPointSize(1.0f);
+        if (lighting) glEnable(GL_LIGHTING);
+        MaterialState.invalidate();
+
+        vertices.clear();
+        colors.clear();
+        count = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private void grow() {
+        FloatBuffer newVertices = BufferUtils.createFloatBuffer(vertices.capacity() * 2);
+        FloatBuffer newColors = BufferUtils.createFloatBuffer(colors.capacity() * 2);
+        vertices.flip();
+        colors.flip();
+        newVertices.put(vertices);
+        newColors.put(colors);
+        vertices = newVertices;
+        colors = newColors;
+    }
+}
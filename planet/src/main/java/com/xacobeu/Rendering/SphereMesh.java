@@ -0,0 +1,109 @@
+package com.xacobeu.Rendering;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+
+// Unit sphere built once per resolution into a VBO and IBO. Bodies draw it
+// with one glDrawElements call, scaled to their radius by the modelview.
+// On a unit sphere the normal equals the position, so one buffer holds both.
+public class SphereMesh {
+    private static final Map<Integer, SphereMesh> cache = new HashMap<>();
+
+    private final int vertexBuffer;
+    private final int indexBuffer;
+    private final int indexCount;
+
+    public static SphereMesh get(int resolution) {
+        SphereMesh mesh = cache.get(resolution);
+        if (mesh == null) {
+            mesh = new SphereMesh(resolution);
+            cache.put(resolution, mesh);
+        }
+        return mesh;
+    }
+
+    // Deletes all cached meshes, call before the GL context goes away.
+    public static void releaseAll() {
+        for (SphereMesh mesh : cache.values()) {
+            glDeleteBuffers(mesh.vertexBuffer);
+            glDeleteBuffers(mesh.indexBuffer);
+        }
+        cache.clear();
+    }
+
+    private SphereMesh(int resolution) {
+        int stacks = resolution;
+        int slices = resolution;
+
+        // Trig tables for latitude and longitude.
+        double[] latSin = new double[stacks + 1];
+        double[] latCos = new double[stacks + 1];
+        for (int i = 0; i <= stacks; i++) {
+            double lat = Math.PI * (-0.5 + (double) i / stacks);
+            latSin[i] = Math.sin(lat);
+            latCos[i] = Math.cos(lat);
+        }
+        double[] lngSin = new double[slices + 1];
+        double[] lngCos = new double[slices + 1];
+        for (int j = 0; j <= slices; j++) {
+            double lng = 2 * Math.PI * (double) j / slices;
+            lngSin[j] = Math.sin(lng);
+            lngCos[j] = Math.cos(lng);
+        }
+
+        FloatBuffer vertices = BufferUtils.createFloatBuffer((stacks + 1) * (slices + 1) * 3);
+        for (int i = 0; i <= stacks; i++) {
+            for (int j = 0; j <= slices; j++) {
+                vertices.put((float) (lngCos[j] * latCos[i]));
+                vertices.put((float) (lngSin[j] * latCos[i]));
+                vertices.put((float) latSin[i]);
+            }
+        }
+        vertices.flip();
+
+        indexCount = stacks * slices * 6;
+        IntBuffer indices = BufferUtils.createIntBuffer(indexCount);
+        for (int i = 0; i < stacks; i++) {
+            for (int j = 0; j < slices; j++) {
+                int a = i * (slices + 1) + j;
+                int b = a + slices + 1;
+                indices.put(a).put(a + 1).put(b);
+                indices.put(b).put(a + 1).put(b + 1);
+            }
+        }
+        indices.flip();
+
+        vertexBuffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        indexBuffer = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    public void draw() {
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_NORMAL_ARRAY);
+        glVertexPointer(3, GL_FLOAT, 0, 0L);
+        glNormalPointer(GL_FLOAT, 0, 0L);
+
+        glDrawElements(GL_TRIANGLES, indexCount, GL_UNSIGNED_INT, 0L);
+
+        glDisableClientState(GL_NORMAL_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+}
@@ -0,0 +1,189 @@
+package com.xacobeu.Rendering;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.FloatBuffer;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.TrailBuffer;
+
+// Keeps a screen-space decimated copy of every body's trail in a VBO laid out
+// like the copy's ring. Points closer than about a pixel to the previous kept
+// point are skipped, so the cost of a trail follows its length on screen
+// rather than its history. Only points kept since the last frame are
+// uploaded, and each trail is drawn with one or two glDrawArrays calls. Must
+// be used from the GL thread.
+public class TrailRenderer {
+    // Largest gap between kept points, the 2D view draws one unit per pixel.
+    private static final double TOLERANCE_PIXELS = 1.0;
+
+    private static class TrailVbo {
+        DecimatedTrail decimated;
+        int buffer;
+        int capacity;
+        int generation;
+        long uploaded;
+        long lastFrame;
+    }
+
+    private final Map<Body, TrailVbo> vbos = new IdentityHashMap<>();
+    private FloatBuffer scratch = BufferUtils.createFloatBuffer(1024);
+    private boolean lineStrips = false;
+    private long frame = 0;
+
+    // Pass the 3D view's culler to decimate for its projection, or null for
+    // the 2D view.
+    public void draw(Body[] bodies, int count, ViewCuller culler) {
+        frame++;
+
+        boolean lighting = glIsEnabled(GL_LIGHTING);
+        if (lighting) glDisable(GL_LIGHTING);
+        glColor4f(Colors.WHITE[0], Colors.WHITE[1], Colors.WHITE[2], 1.0f);
+        MaterialState.invalidate();
+        glEnableClientState(GL_VERTEX_ARRAY);
+
+        for (int i = 0; i < count; i++) {
+            Body body = bodies[i];
+            TrailBuffer trail = body.getTrail();
+            if (trail.isEmpty()) continue;
+
+            TrailVbo vbo = vbos.get(body);
+            if (vbo == null) {
+                vbo = new TrailVbo();
+                vbo.decimated = new DecimatedTrail(trail.getDimensions());
+                vbo.buffer = glGenBuffers();
+                vbo.generation = -1;
+                vbos.put(body, vbo);
+            }
+            vbo.lastFrame = frame;
+
+            // Size pixels near the newest point, where the body is.
+            int newest = trail.size() - 1;
+            double tolerance = TOLERANCE_PIXELS;
+            if (culler != null) {
+                tolerance *= culler.pixelSize(trail.getX(newest), trail.getY(newest), trail.getZ(newest));
+            }
+            DecimatedTrail decimated = vbo.decimated;
+            decimated.update(trail, tolerance);
+            if (decimated.size() == 0) continue;
+
+            glBindBuffer(GL_ARRAY_BUFFER, vbo.buffer);
+            upload(decimated, vbo);
+            glVertexPointer(decimated.getDimensions(), GL_FLOAT, 0, 0L);
+            drawRing(decimated);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        if (lighting) glEnable(GL_LIGHTING);
+
+        releaseStale();
+    }
+
+    // Deletes all buffers, call before the GL context goes away.
+    public void release() {
+        for (TrailVbo vbo : vbos.values()) {
+            glDeleteBuffers(vbo.buffer);
+        }
+        vbos.clear();
+    }
+
+    private void upload(DecimatedTrail decimated, TrailVbo vbo) {
+        int capacity = decimated.getCapacity();
+        int size = decimated.size();
+        long added = decimated.getAdded();
+
+        // After a rebuild or growth the ring is laid out again, upload all of
+        // it. One extra slot mirrors slot 0 so a wrapped line strip stays joined.
+        int count;
+        if (vbo.generation != decimated.getGeneration()) {
+            if (vbo.capacity != capacity) {
+                vbo.capacity = capacity;
+                glBufferData(GL_ARRAY_BUFFER, (long) (capacity + 1) * decimated.getDimensions() * Float.BYTES, GL_DYNAMIC_DRAW);
+            }
+            vbo.generation = decimated.getGeneration();
+            count = size;
+        } else {
+            count = (int) Math.min(added - vbo.uploaded, size);
+        }
+        vbo.uploaded = added;
+        if (count == 0) return;
+
+        int slot = (decimated.getStart() + size - count) % capacity;
+        while (count > 0) {
+            int run = Math.min(count, capacity - slot);
+            uploadSlots(decimated, slot, run, slot);
+            if (slot == 0) {
+                uploadSlots(decimated, 0, 1, capacity);
+            }
+            count -= run;
+            slot = 0;
+        }
+    }
+
+    private void uploadSlots(DecimatedTrail decimated, int slot, int count, int targetSlot) {
+        int dimensions = decimated.getDimensions();
+        int floats = count * dimensions;
+        if (scratch.capacity() < floats) {
+            scratch = BufferUtils.createFloatBuffer(floats);
+        }
+
+        scratch.clear();
+        scratch.put(decimated.getPoints(), slot * dimensions, floats);
+        scratch.flip();
+
+        glBufferSubData(GL_ARRAY_BUFFER, (long) targetSlot * dimensions * Float.BYTES, scratch);
+    }
+
+    private void drawRing(DecimatedTrail decimated) {
+        int size = decimated.size();
+        int start = decimated.getStart();
+        int capacity = decimated.getCapacity();
+
+        if (!lineStrips) {
+            // Point order does not matter, draw the used slots as they lie.
+            if (start + size <= capacity) {
+                glDrawArrays(GL_POINTS, start, size);
+            } else {
+                glDrawArrays(GL_POINTS, start, capacity - start);
+                glDrawArrays(GL_POINTS, 0, start + size - capacity);
+            }
+            return;
+        }
+
+        // Points drop off the front, so the ring can wrap before it is full.
+        if (start + size <= capacity) {
+            glDrawArrays(GL_LINE_STRIP, start, size);
+        } else {
+            glDrawArrays(GL_LINE_STRIP, start, capacity + 1 - start);
+            glDrawArrays(GL_LINE_STRIP, 0, start + size - capacity);
+        }
+    }
+
+    // Frees buffers of bodies that were not drawn this frame, e.g. after a reset.
+    private void releaseStale() {
+        Iterator<TrailVbo> it = vbos.values().iterator();
+        while (it.hasNext()) {
+            TrailVbo vbo = it.next();
+            if (vbo.lastFrame != frame) {
+                glDeleteBuffers(vbo.buffer);
+                it.remove();
+            }
+        }
+    }
+
+    public boolean isLineStrips() {
+        return lineStrips;
+    }
+
+    public void setLineStrips(boolean lineStrips) {
+        this.lineStrips = lineStrips;
+    }
+}
@@ -0,0 +1,86 @@
+package com.xacobeu.Rendering;
+
+// Frustum culling and sphere level of detail for the 3D view. The frustum
+// planes are taken from projection * view once per frame; each body is then
+// tested as a bounding sphere and given a mesh resolution from its radius
+// in pixels. Bodies below the smallest level are drawn as point sprites.
+public class ViewCuller {
+    public static final int SPRITE = 0;
+
+    // Sphere resolutions and the pixel radius from which each is used.
+    private static final int[] RESOLUTIONS = {100, 48, 24, 12, 6};
+    private static final double[] MIN_PIXELS = {48, 16, 6, 2.5, 1.25};
+
+    // Plane i is planes[4i] * x + planes[4i + 1] * y + planes[4i + 2] * z + planes[4i + 3].
+    private final double[] planes = new double[24];
+
+    // Projection * view, scratch for update.
+    private final double[] clip = new double[16];
+
+    // View matrix row giving view-space z, and pixels per unit at depth 1.
+    private double depthX, depthY, depthZ, depthW;
+    private double pixelScale;
+    private double near;
+
+    public void update(float[] projection, float[] view, int viewportHeight) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += projection[k * 4 + row] * view[column * 4 + k];
+                }
+                clip[column * 4 + row] = sum;
+            }
+        }
+
+        // Left, right, bottom, top, near and far from the clip matrix rows.
+        for (int p = 0; p < 6; p++) {
+            int row = p / 2;
+            double sign = p % 2 == 0 ? 1 : -1;
+            double a = clip[3] + sign * clip[row];
+            double b = clip[7] + sign * clip[4 + row];
+            double c = clip[11] + sign * clip[8 + row];
+            double d = clip[15] + sign * clip[12 + row];
+            double length = Math.sqrt(a * a + b * b + c * c);
+            planes[p * 4] = a / length;
+            planes[p * 4 + 1] = b / length;
+            planes[p * 4 + 2] = c / length;
+            planes[p * 4 + 3] = d / length;
+        }
+
+        depthX = -view[2];
+        depthY = -view[6];
+        depthZ = -view[10];
+        depthW = -view[14];
+        pixelScale = projection[5] * viewportHeight / 2.0;
+        near = projection[14] / (projection[10] - 1);
+    }
+
+    public boolean isVisible(double x, double y, double z, double radius) {
+        for (int p = 0; p < 24; p += 4) {
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // World units covered by one pixel at the depth of a point, taken at the
+    // near plane for points behind it.
+    public double pixelSize(double x, double y, double z) {
+        double depth = depthX * x + depthY * y + depthZ * z + depthW;
+        return Math.max(depth, near) / pixelScale;
+    }
+
+    // Mesh resolution for a visible sphere, or SPRITE.
+    public int resolution(double x, double y, double z, double radius) {
+        double depth = depthX * x + depthY * y + depthZ * z + depthW;
+        if (depth <= radius) return RESOLUTIONS[0];
+
+        double pixels = radius * pixelScale / depth;
+        for (int level = 0; level < RESOLUTIONS.length; level++) {
+            if (pixels >= MIN_PIXELS[level]) return RESOLUTIONS[level];
+        }
+        return SPRITE;
+    }
+}
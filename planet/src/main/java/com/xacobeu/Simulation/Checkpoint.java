@@ -0,0 +1,187 @@
+package com.xacobeu.Simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+import com.xacobeu.Bodies.TrailBuffer;
+
+// Binary snapshot of an engine's bodies, written and read through memory
+// mapped windows. Everything after the header is a primitive array:
+//
+//   int magic, int version, int dimensions, int count, long step
+//   double x, y, z, vx, vy, vz, mass, radius   [count each]
+//   float color                                 [count * 4]
+//   byte emissive                               [count]
+//   int trail size                              [count]
+//   double trail points, oldest first           [sum of sizes * dimensions]
+//
+// All values are little-endian.
+public final class Checkpoint {
+    private static final int MAGIC = 0x4B435650; // "PVCK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private Checkpoint() {
+    }
+
+    public static void save(SimulationEngine engine, Path path) throws IOException {
+        BodyStore store = engine.getStore();
+        int n = store.size();
+        int dimensions = engine.isThreeDimensional() ? 3 : 2;
+
+        int[] trailSizes = new int[n];
+        long trailPoints = 0;
+        for (int i = 0; i < n; i++) {
+            trailSizes[i] = store.getView(i).getTrail().size();
+            trailPoints += trailSizes[i];
+        }
+
+        long size = HEADER_BYTES + (long) n * (8 * 8 + 4 * 4 + 1 + 4) + trailPoints * dimensions * 8;
+        try (MappedFile file = MappedFile.create(path, size)) {
+            file.putInt(MAGIC);
+            file.putInt(VERSION);
+            file.putInt(dimensions);
+            file.putInt(n);
+            file.putLong(engine.getStepCount());
+
+            file.putDoubles(store.getX(), 0, n);
+            file.putDoubles(store.getY(), 0, n);
+            file.putDoubles(store.getZ(), 0, n);
+            file.putDoubles(store.getVelocityX(), 0, n);
+            file.putDoubles(store.getVelocityY(), 0, n);
+            file.putDoubles(store.getVelocityZ(), 0, n);
+            file.putDoubles(store.getMass(), 0, n);
+            file.putDoubles(store.getRadius(), 0, n);
+
+            float[] colors = new float[n * 4];
+            byte[] emissive = new byte[n];
+            for (int i = 0; i < n; i++) {
+                Body body = store.getView(i);
+                float[] color = body instanceof Planet2D ? ((Planet2D) body).getColor() : Colors.WHITE;
+                System.arraycopy(color, 0, colors, i * 4, 4);
+                emissive[i] = (byte) (body instanceof Planet3D && ((Planet3D) body).isEmissive() ? 1 : 0);
+            }
+            file.putFloats(colors, 0, colors.length);
+            file.putBytes(emissive, 0, n);
+
+            file.putInts(trailSizes, 0, n);
+            for (int i = 0; i < n; i++) {
+                writeTrail(file, store.getView(i).getTrail(), dimensions);
+            }
+        }
+    }
+
+    // Replaces the engine's bodies with the checkpoint's. The engine must not
+    // be stepping, and must match the checkpoint's dimensions.
+    public static void load(SimulationEngine engine, Path path) throws IOException {
+        try (MappedFile file = MappedFile.open(path)) {
+            int dimensions = readHeader(file);
+            if ((dimensions == 3) != engine.isThreeDimensional()) {
+                throw new IOException("Checkpoint is " + dimensions + "D but the engine is not");
+            }
+            int n = file.getInt();
+            long step = file.getLong();
+
+            // State goes straight into the store, views are bound afterwards.
+            engine.clear();
+            BodyStore store = engine.getStore();
+            store.append(n);
+            file.getDoubles(store.getX(), 0, n);
+            file.getDoubles(store.getY(), 0, n);
+            file.getDoubles(store.getZ(), 0, n);
+            file.getDoubles(store.getVelocityX(), 0, n);
+            file.getDoubles(store.getVelocityY(), 0, n);
+            file.getDoubles(store.getVelocityZ(), 0, n);
+            file.getDoubles(store.getMass(), 0, n);
+            file.getDoubles(store.getRadius(), 0, n);
+
+            float[] colors = new float[n * 4];
+            file.getFloats(colors, 0, colors.length);
+            byte[] emissive = new byte[n];
+            file.getBytes(emissive, 0, n);
+            int[] trailSizes = new int[n];
+            file.getInts(trailSizes, 0, n);
+
+            for (int i = 0; i < n; i++) {
+                float[] color = {colors[i * 4], colors[i * 4 + 1], colors[i * 4 + 2], colors[i * 4 + 3]};
+                Body body = dimensions == 3
+                        ? new Planet3D(store, i, color, emissive[i] != 0)
+                        : new Planet2D(store, i, color);
+                readTrail(file, body.getTrail(), trailSizes[i], dimensions);
+            }
+            engine.setStepCount(step);
+        }
+    }
+
+    // Dimensions of the checkpoint at path, 2 or 3.
+    public static int readDimensions(Path path) throws IOException {
+        try (MappedFile file = MappedFile.open(path)) {
+            return readHeader(file);
+        }
+    }
+
+    private static int readHeader(MappedFile file) throws IOException {
+        if (file.size() < HEADER_BYTES || file.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file");
+        }
+        int version = file.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int dimensions = file.getInt();
+        if (dimensions != 2 && dimensions != 3) {
+            throw new IOException("Invalid checkpoint dimensions " + dimensions);
+        }
+        return dimensions;
+    }
+
+    // Writes the ring oldest first, as at most two runs of the raw storage.
+    private static void writeTrail(MappedFile file, TrailBuffer trail, int dimensions) throws IOException {
+        int size = trail.size();
+        if (size == 0) return;
+
+        if (trail.getDimensions() != dimensions) {
+            // Body and engine disagree on dimensions, copy point by point.
+            double[] point = new double[dimensions];
+            for (int i = 0; i < size; i++) {
+                point[0] = trail.getX(i);
+                point[1] = trail.getY(i);
+                if (dimensions == 3) point[2] = trail.getZ(i);
+                file.putDoubles(point, 0, dimensions);
+            }
+            return;
+        }
+
+        double[] data = trail.getData();
+        int start = trail.getStart();
+        int first = Math.min(size, trail.getCapacity() - start);
+        file.putDoubles(data, start * dimensions, first * dimensions);
+        file.putDoubles(data, 0, (size - first) * dimensions);
+    }
+
+    // Reads size points straight into the trail's storage. Points that do not
+    // fit are dropped from the oldest end.
+    private static void readTrail(MappedFile file, TrailBuffer trail, int size, int dimensions) throws IOException {
+        int kept = Math.min(size, trail.getCapacity());
+        file.skip((long) (size - kept) * dimensions * 8);
+
+        if (trail.getDimensions() == dimensions) {
+            trail.reserve(kept);
+            file.getDoubles(trail.getData(), 0, kept * dimensions);
+            trail.restore(kept);
+            return;
+        }
+
+        trail.clear();
+        double[] point = new double[dimensions];
+        for (int i = 0; i < kept; i++) {
+            file.getDoubles(point, 0, dimensions);
+            trail.add(point[0], point[1], dimensions == 3 ? point[2] : 0);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.xacobeu.Simulation;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// Lock-free multi-producer, single-consumer queue of engine commands. Any
+// thread may submit; producers only swap the tail and link the old one to
+// the new node, so they never wait for each other or for the consumer. Only
+// the thread that owns the engine drains it, and an empty drain is a single
+// volatile read.
+public class CommandQueue {
+    private static final class Node {
+        EngineCommand command;
+        volatile Node next;
+
+        Node(EngineCommand command) {
+            this.command = command;
+        }
+    }
+
+    private final AtomicReference<Node> tail;
+
+    // Consumer side, the last node taken. Starts as an empty stub.
+    private Node head;
+
+    public CommandQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    public void submit(EngineCommand command) {
+        Node node = new Node(command);
+        tail.getAndSet(node).next = node;
+    }
+
+    // Applies every command linked so far, in submission order, and returns
+    // how many ran. A command whose producer is between the swap and the link
+    // is left for the next drain.
+    public int drain(SimulationEngine engine) {
+        int count = 0;
+        Node next;
+        while ((next = head.next) != null) {
+            EngineCommand command = next.command;
+            next.command = null;
+            head = next;
+            command.apply(engine);
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+}
@@ -0,0 +1,6 @@
+package com.xacobeu.Simulation;
+
+// A change to an engine, applied by its SimulationRunner between steps.
+public interface EngineCommand {
+    void apply(SimulationEngine engine);
+}
@@ -0,0 +1,262 @@
+package com.xacobeu.Simulation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Sequential little-endian reads and writes through memory-mapped windows.
+// A single mapping is limited to 2 GB, so larger files are walked a window
+// at a time. Writable files are created at their final size up front.
+//
+// Windows are unmapped as soon as they are left or the file is closed, not
+// when they are collected, so a file can be overwritten right after it was
+// read. Windows refuses to truncate a file that is still mapped.
+class MappedFile implements Closeable {
+    private static final long WINDOW = 64L << 20;
+
+    // Releases a mapping, or does nothing when the JDK has no way to.
+    private interface Unmapper {
+        void unmap(MappedByteBuffer buffer) throws ReflectiveOperationException;
+    }
+
+    private static final Unmapper UNMAPPER = findUnmapper();
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    private MappedFile(FileChannel channel, FileChannel.MapMode mode, long size) {
+        this.channel = channel;
+        this.mode = mode;
+        this.size = size;
+    }
+
+    static MappedFile create(Path path, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new MappedFile(channel, FileChannel.MapMode.READ_WRITE, size);
+    }
+
+    static MappedFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedFile(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+    }
+
+    // Maps the window holding the next bytes bytes, or at least the next one
+    // byte for bulk transfers that can be split.
+    private MappedByteBuffer window(int bytes) throws IOException {
+        if (window != null && position >= windowStart && position + bytes <= windowStart + window.limit()) {
+            window.position((int) (position - windowStart));
+            return window;
+        }
+        if (position + bytes > size) {
+            throw new EOFException("Read or write past the end of the mapped file");
+        }
+
+        unmapWindow();
+        windowStart = position;
+        long length = Math.min(Math.max(WINDOW, bytes), size - position);
+        window = channel.map(mode, windowStart, length);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        return window;
+    }
+
+    // Elements that fit in the current window, at least one.
+    private int run(int remaining, int elementBytes) throws IOException {
+        MappedByteBuffer buffer = window(elementBytes);
+        return Math.min(remaining, buffer.remaining() / elementBytes);
+    }
+
+    void putInt(int value) throws IOException {
+        window(4).putInt(value);
+        position += 4;
+    }
+
+    void putLong(long value) throws IOException {
+        window(8).putLong(value);
+        position += 8;
+    }
+
+    void putDoubles(double[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 8);
+            window.asDoubleBuffer().put(values, offset, run);
+            position += (long) run * 8;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void putFloats(float[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 4);
+            window.asFloatBuffer().put(values, offset, run);
+            position += (long) run * 4;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void putInts(int[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 4);
+            window.asIntBuffer().put(values, offset, run);
+            position += (long) run * 4;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void putBytes(byte[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 1);
+            window.put(values, offset, run);
+            position += run;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    int getInt() throws IOException {
+        int value = window(4).getInt();
+        position += 4;
+        return value;
+    }
+
+    long getLong() throws IOException {
+        long value = window(8).getLong();
+        position += 8;
+        return value;
+    }
+
+    void getDoubles(double[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 8);
+            window.asDoubleBuffer().get(values, offset, run);
+            position += (long) run * 8;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void getFloats(float[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 4);
+            window.asFloatBuffer().get(values, offset, run);
+            position += (long) run * 4;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void getInts(int[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 4);
+            window.asIntBuffer().get(values, offset, run);
+            position += (long) run * 4;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void getBytes(byte[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            int run = run(count, 1);
+            window.get(values, offset, run);
+            position += run;
+            offset += run;
+            count -= run;
+        }
+    }
+
+    void skip(long bytes) {
+        position += bytes;
+    }
+
+    long position() {
+        return position;
+    }
+
+    void seek(long position) {
+        this.position = position;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long remaining() {
+        return size - position;
+    }
+
+    // Cuts a writable file back to what was written up to the position, for
+    // files created larger than they turned out. Nothing may be written after.
+    void truncateToPosition() throws IOException {
+        unmapWindow();
+        channel.truncate(position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        unmapWindow();
+        channel.close();
+    }
+
+    // Callers never keep a window or its views between calls, so nothing
+    // can touch the memory once it is unmapped.
+    private void unmapWindow() {
+        if (window == null) return;
+
+        MappedByteBuffer old = window;
+        window = null;
+        unmap(old);
+    }
+
+    // Releases a mapping right away instead of waiting for the collector. The
+    // buffer and every view of it must not be touched afterwards.
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            UNMAPPER.unmap(buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Left for the collector.
+        }
+    }
+
+    // Unsafe.invokeCleaner from Java 9, the buffer's own cleaner on Java 8.
+    private static Unmapper findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not Java 9 or later.
+        }
+
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object instance = cleaner.invoke(buffer);
+                if (instance != null) clean.invoke(instance);
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return buffer -> {
+            };
+        }
+    }
+}
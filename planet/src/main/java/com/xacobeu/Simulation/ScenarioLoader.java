@@ -0,0 +1,405 @@
+package com.xacobeu.Simulation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+
+// Loads initial conditions into an engine. Binary scenarios use the
+// Checkpoint format. CSV scenarios start with a header naming the columns:
+//
+//   x, y, mass, radius        required
+//   z, vx, vy, vz             optional, z or vz make the scenario 3D
+//   r, g, b, a, emissive      optional colour (0-1) and emissive flag (0/1)
+//
+// The CSV is memory mapped and split into chunks at line breaks. Chunks are
+// counted and then parsed in parallel straight into the engine's BodyStore.
+public final class ScenarioLoader {
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private static final int X = 0, Y = 1, Z = 2, VX = 3, VY = 4, VZ = 5, MASS = 6, RADIUS = 7;
+    private static final int R = 8, G = 9, B = 10, A = 11, EMISSIVE = 12, COLUMN_KINDS = 13;
+    private static final String[] COLUMN_NAMES = {"x", "y", "z", "vx", "vy", "vz", "mass", "radius", "r", "g", "b", "a", "emissive"};
+
+    // Powers of ten that are exact doubles, for the fast number path.
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private ScenarioLoader() {
+    }
+
+    // Replaces the engine's bodies with the scenario's. The engine must not be
+    // stepping and must match the scenario's dimensions. If a row fails to
+    // parse the engine is left empty.
+    public static void load(SimulationEngine engine, Path path) throws IOException {
+        if (isCheckpoint(path)) {
+            Checkpoint.load(engine, path);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            // A failed parallel parse can leave chunk tasks still reading the
+            // buffer, so it is only unmapped once every task has finished.
+            boolean finished = true;
+            try {
+                Csv csv = new Csv(buffer);
+                if (csv.isThreeDimensional() != engine.isThreeDimensional()) {
+                    throw new IOException("Scenario is " + (csv.isThreeDimensional() ? 3 : 2) + "D but the engine is not");
+                }
+                finished = false;
+                try {
+                    csv.load(engine);
+                } catch (IllegalArgumentException e) {
+                    engine.clear();
+                    throw e;
+                }
+                finished = true;
+            } finally {
+                if (finished) MappedFile.unmap(buffer);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Writes the engine's bodies as a CSV scenario that load() reads back
+    // exactly, e.g. the final state of a batch run.
+    public static void writeCsv(SimulationEngine engine, Path path) throws IOException {
+        BodyStore store = engine.getStore();
+        int n = store.size();
+        boolean threeDimensional = engine.isThreeDimensional();
+        double[][] columns = threeDimensional
+                ? new double[][]{store.getX(), store.getY(), store.getZ(), store.getVelocityX(), store.getVelocityY(), store.getVelocityZ(), store.getMass(), store.getRadius()}
+                : new double[][]{store.getX(), store.getY(), store.getVelocityX(), store.getVelocityY(), store.getMass(), store.getRadius()};
+
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            out.write(threeDimensional ? "x,y,z,vx,vy,vz,mass,radius,r,g,b,a,emissive\n" : "x,y,vx,vy,mass,radius,r,g,b,a\n");
+
+            StringBuilder line = new StringBuilder(256);
+            for (int i = 0; i < n; i++) {
+                line.setLength(0);
+                for (double[] column : columns) {
+                    line.append(column[i]).append(',');
+                }
+
+                Body body = store.getView(i);
+                float[] color = body instanceof Planet2D ? ((Planet2D) body).getColor() : Colors.WHITE;
+                line.append(color[0]).append(',').append(color[1]).append(',').append(color[2]).append(',').append(color[3]);
+                if (threeDimensional) {
+                    line.append(',').append(body instanceof Planet3D && ((Planet3D) body).isEmissive() ? 1 : 0);
+                }
+                out.append(line).append('\n');
+            }
+        }
+    }
+
+    // Dimensions of the scenario at path, 2 or 3.
+    public static int readDimensions(Path path) throws IOException {
+        if (isCheckpoint(path)) return Checkpoint.readDimensions(path);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            try {
+                return new Csv(buffer).isThreeDimensional() ? 3 : 2;
+            } finally {
+                MappedFile.unmap(buffer);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isCheckpoint(Path path) throws IOException {
+        try {
+            Checkpoint.readDimensions(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("CSV scenarios over 2 GB are not supported, use the binary format");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    private static class Csv {
+        private final ByteBuffer bytes;
+        private final int end;
+
+        // Column kind of each CSV column, -1 when ignored.
+        private final int[] kinds;
+        private final boolean threeDimensional;
+        private final int dataStart;
+
+        // Chunk [starts[c], starts[c + 1]) begins on a line and holds rows[c] rows.
+        private int[] starts;
+        private int[] rows;
+
+        Csv(ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.end = bytes.limit();
+
+            int lineEnd = 0;
+            while (lineEnd < end && bytes.get(lineEnd) != '\n') lineEnd++;
+            byte[] header = new byte[lineEnd];
+            for (int i = 0; i < lineEnd; i++) header[i] = bytes.get(i);
+            this.dataStart = Math.min(end, lineEnd + 1);
+
+            String[] names = new String(header, StandardCharsets.UTF_8).split(",");
+            kinds = new int[names.length];
+            boolean[] present = new boolean[COLUMN_KINDS];
+            for (int c = 0; c < names.length; c++) {
+                kinds[c] = kind(names[c].trim().toLowerCase());
+                if (kinds[c] >= 0) present[kinds[c]] = true;
+            }
+            for (int required : new int[]{X, Y, MASS, RADIUS}) {
+                if (!present[required]) {
+                    throw new IllegalArgumentException("Scenario header is missing the " + COLUMN_NAMES[required] + " column");
+                }
+            }
+            threeDimensional = present[Z] || present[VZ];
+        }
+
+        private static int kind(String name) {
+            for (int k = 0; k < COLUMN_KINDS; k++) {
+                if (COLUMN_NAMES[k].equals(name)) return k;
+            }
+            return -1;
+        }
+
+        boolean isThreeDimensional() {
+            return threeDimensional;
+        }
+
+        void load(SimulationEngine engine) {
+            split();
+
+            // Count rows per chunk, then give every chunk its first index.
+            IntStream.range(0, rows.length).parallel().forEach(c -> rows[c] = countRows(chunk(c)));
+            int[] firsts = new int[rows.length];
+            int total = 0;
+            for (int c = 0; c < rows.length; c++) {
+                firsts[c] = total;
+                total += rows[c];
+            }
+
+            engine.clear();
+            BodyStore store = engine.getStore();
+            store.append(total);
+            IntStream.range(0, rows.length).parallel().forEach(c -> parse(store, chunk(c), firsts[c]));
+        }
+
+        // Copy of chunk c, parsing a plain array is much faster than reading
+        // the mapped buffer a byte at a time.
+        private byte[] chunk(int c) {
+            ByteBuffer view = bytes.duplicate();
+            view.position(starts[c]);
+            byte[] data = new byte[starts[c + 1] - starts[c]];
+            view.get(data);
+            return data;
+        }
+
+        // Splits the data into chunks of about CHUNK_BYTES ending on line breaks.
+        private void split() {
+            int chunks = Math.max(1, (end - dataStart) / CHUNK_BYTES);
+            starts = new int[chunks + 1];
+            starts[0] = dataStart;
+            for (int c = 1; c < chunks; c++) {
+                int position = Math.max(starts[c - 1], dataStart + (int) ((long) (end - dataStart) * c / chunks));
+                while (position < end && bytes.get(position - 1) != '\n') position++;
+                starts[c] = position;
+            }
+            starts[chunks] = end;
+            rows = new int[chunks];
+        }
+
+        private int countRows(byte[] data) {
+            int count = 0;
+            int position = 0;
+            while (position < data.length) {
+                int lineEnd = lineEnd(data, position);
+                if (!isBlank(data, position, lineEnd)) count++;
+                position = lineEnd + 1;
+            }
+            return count;
+        }
+
+        private void parse(BodyStore store, byte[] data, int first) {
+            double[] values = new double[COLUMN_KINDS];
+            int index = first;
+            int position = 0;
+
+            while (position < data.length) {
+                int lineEnd = lineEnd(data, position);
+                if (!isBlank(data, position, lineEnd)) {
+                    parseRow(data, position, lineEnd, index, values);
+                    bind(store, index, values);
+                    index++;
+                }
+                position = lineEnd + 1;
+            }
+        }
+
+        private void parseRow(byte[] data, int from, int to, int index, double[] values) {
+            values[Z] = values[VX] = values[VY] = values[VZ] = values[EMISSIVE] = 0;
+            values[R] = Colors.WHITE[0];
+            values[G] = Colors.WHITE[1];
+            values[B] = Colors.WHITE[2];
+            values[A] = Colors.WHITE[3];
+
+            int column = 0;
+            int fieldStart = from;
+            for (int position = from; position <= to; position++) {
+                if (position < to && data[position] != ',') continue;
+
+                if (column < kinds.length && kinds[column] >= 0) {
+                    values[kinds[column]] = parseNumber(data, fieldStart, position, index);
+                }
+                column++;
+                fieldStart = position + 1;
+            }
+            if (column < kinds.length) {
+                throw new IllegalArgumentException("Row " + (index + 1) + " has " + column + " columns, expected " + kinds.length);
+            }
+        }
+
+        private void bind(BodyStore store, int i, double[] values) {
+            store.getX()[i] = values[X];
+            store.getY()[i] = values[Y];
+            store.getZ()[i] = values[Z];
+            store.getVelocityX()[i] = values[VX];
+            store.getVelocityY()[i] = values[VY];
+            store.getVelocityZ()[i] = values[VZ];
+            store.getMass()[i] = values[MASS];
+            store.getRadius()[i] = values[RADIUS];
+
+            float[] color = {(float) values[R], (float) values[G], (float) values[B], (float) values[A]};
+            if (threeDimensional) {
+                new Planet3D(store, i, color, values[EMISSIVE] != 0);
+            } else {
+                new Planet2D(store, i, color);
+            }
+        }
+
+        private static int lineEnd(byte[] data, int position) {
+            while (position < data.length && data[position] != '\n') position++;
+            return position;
+        }
+
+        private static boolean isBlank(byte[] data, int from, int to) {
+            for (int i = from; i < to; i++) {
+                byte c = data[i];
+                if (c != ' ' && c != '\t' && c != '\r') return false;
+            }
+            return true;
+        }
+
+        // Decimal number in [from, to). Numbers with at most 15 significant
+        // digits and a small exponent are converted exactly without allocating,
+        // anything else goes through Double.parseDouble.
+        private static double parseNumber(byte[] data, int from, int to, int index) {
+            while (from < to && isSpace(data[from])) from++;
+            while (to > from && isSpace(data[to - 1])) to--;
+
+            int position = from;
+            boolean negative = false;
+            if (position < to && (data[position] == '-' || data[position] == '+')) {
+                negative = data[position] == '-';
+                position++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            boolean fast = true;
+
+            for (boolean fraction = false; position < to; position++) {
+                byte c = data[position];
+                if (c == '.' && !fraction) {
+                    fraction = true;
+                    continue;
+                }
+                if (c < '0' || c > '9') break;
+
+                any = true;
+                if (mantissa > 0 || c != '0') {
+                    if (++digits > 15) fast = false;
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (fraction) exponent--;
+            }
+
+            if (position < to && (data[position] == 'e' || data[position] == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < to && (data[position] == '-' || data[position] == '+')) {
+                    negativeExponent = data[position] == '-';
+                    position++;
+                }
+                int value = 0;
+                boolean exponentDigits = false;
+                for (; position < to && data[position] >= '0' && data[position] <= '9'; position++) {
+                    value = Math.min(value * 10 + (data[position] - '0'), 100000);
+                    exponentDigits = true;
+                }
+                if (!exponentDigits) fast = false;
+                exponent += negativeExponent ? -value : value;
+            }
+
+            if (fast && any && position == to) {
+                double result = fastValue(mantissa, exponent);
+                if (!Double.isNaN(result)) return negative ? -result : result;
+            }
+            return slowNumber(data, from, to, index);
+        }
+
+        // Exact when mantissa and the power of ten are both exact doubles.
+        private static double fastValue(long mantissa, int exponent) {
+            if (mantissa == 0) return 0;
+            if (exponent < 0) {
+                return -exponent < POWERS_OF_TEN.length ? mantissa / POWERS_OF_TEN[-exponent] : Double.NaN;
+            }
+            // Move part of a large exponent into the mantissa while it stays exact.
+            while (exponent >= POWERS_OF_TEN.length && mantissa < (1L << 53) / 10) {
+                mantissa *= 10;
+                exponent--;
+            }
+            return exponent < POWERS_OF_TEN.length ? mantissa * POWERS_OF_TEN[exponent] : Double.NaN;
+        }
+
+        private static double slowNumber(byte[] data, int from, int to, int index) {
+            String value = new String(data, from, to - from, StandardCharsets.UTF_8);
+            if (value.equalsIgnoreCase("true")) return 1;
+            if (value.equalsIgnoreCase("false")) return 0;
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Row " + (index + 1) + ": invalid number '" + value + "'");
+            }
+        }
+
+        private static boolean isSpace(byte c) {
+            return c == ' ' || c == '\t' || c == '\r';
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.xacobeu.Simulation;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+
+// Built-in starting scenes, shared by the window and the batch runners.
+public final class Scenes {
+    public static final double SUN_MASS = 1.98e30;
+    public static final double EARTH_MASS = 5.97e24;
+
+    private Scenes() {
+    }
+
+    // A sun with two Earth-mass planets, around centre in the 2D view.
+    public static void addSunAndPlanets2D(SimulationEngine engine, double centerX, double centerY) {
+        addSunAndPlanets2D(engine, centerX, centerY, SUN_MASS, EARTH_MASS, 1.0);
+    }
+
+    // Same layout with other masses; velocityScale multiplies the planets'
+    // starting speeds.
+    public static void addSunAndPlanets2D(SimulationEngine engine, double centerX, double centerY,
+            double sunMass, double planetMass, double velocityScale) {
+        engine.addBody(new Planet2D(centerX, centerY, 20, sunMass, Colors.YELLOW));
+        engine.addBody(new Planet2D(centerX, centerY + 100, 10, planetMass, Colors.BLUE));
+        engine.addBody(new Planet2D(centerX, centerY + 200, 10, planetMass, Colors.GREEN));
+        engine.getBodies().get(1).setVelocityX(2 * velocityScale);
+        engine.getBodies().get(2).setVelocityX(1 * velocityScale);
+    }
+
+    // A glowing sun with two Earth-mass planets on inclined orbits.
+    public static void addSunAndPlanets3D(SimulationEngine engine) {
+        addSunAndPlanets3D(engine, SUN_MASS, EARTH_MASS, 1.0);
+    }
+
+    public static void addSunAndPlanets3D(SimulationEngine engine, double sunMass, double planetMass, double velocityScale) {
+        engine.addBody(new Planet3D(0, 0, 0, 20, sunMass, Colors.YELLOW, true));
+        engine.addBody(new Planet3D(0, 100, 0, 10, planetMass, Colors.GREEN, false));
+        engine.addBody(new Planet3D(100, 0, 100, 10, planetMass, Colors.DARK_GRAY, false));
+        engine.getBodies().get(1).setVelocityX(2 * velocityScale);
+        engine.getBodies().get(2).setVelocityX(2 * velocityScale);
+    }
+}
@@ -0,0 +1,317 @@
+package com.xacobeu.Simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Gravity.DirectSumSolver;
+import com.xacobeu.Gravity.GravitySolver;
+import com.xacobeu.Integrators.EulerIntegrator;
+import com.xacobeu.Integrators.ForceEvaluator;
+import com.xacobeu.Integrators.Integrator;
+import com.xacobeu.Profiling.Phase;
+import com.xacobeu.Profiling.PhaseTimer;
+
+// Owns the simulated bodies and advances them in time. Has no rendering
+// dependencies so it can run headless at full CPU speed.
+public class SimulationEngine {
+
+    // Gravitational constant.
+    public static final double G = 6.67430e-11;
+
+    // Screen units to metres for the gravity model.
+    public static final double DISTANCE_SCALE = 6e5;
+
+    // G in screen units, so solvers can work on unscaled positions.
+    public static final double SCALED_G = G / (DISTANCE_SCALE * DISTANCE_SCALE * DISTANCE_SCALE);
+
+    private final BodyStore bodies = new BodyStore();
+    private final boolean threeDimensional;
+
+    private GravitySolver solver = new DirectSumSolver();
+    private Integrator integrator = new EulerIntegrator();
+    private final SpatialHashGrid collisionGrid;
+    private PhaseTimer physicsTimer = new PhaseTimer(Phase.PHYSICS);
+    private PhaseTimer collisionTimer = new PhaseTimer(Phase.COLLISIONS);
+
+    // G for the current distance scale.
+    private double g = SCALED_G;
+
+    private final ForceEvaluator forces = new ForceEvaluator() {
+        @Override
+        public void evaluate(BodyStore store, double[] ax, double[] ay, double[] az) {
+            solver.computeAccelerations(store, g, ax, ay, az);
+            interactions += (long) store.size() * (store.size() - 1);
+        }
+
+        @Override
+        public void evaluate(BodyStore store, int[] active, int activeCount, double[] ax, double[] ay, double[] az) {
+            solver.computeAccelerations(store, g, active, activeCount, ax, ay, az);
+            interactions += (long) activeCount * (store.size() - 1);
+        }
+    };
+
+    // Border collision area, disabled when zero.
+    private int boundsWidth = 0;
+    private int boundsHeight = 0;
+
+    private long stepCount = 0;
+
+    // Body-body force terms requested from the solver, counted as a direct
+    // sum would, so solvers are compared on the same scale.
+    private long interactions = 0;
+
+    // Off when trails are recorded by the consumer, e.g. per rendered frame.
+    private boolean recordTrails = true;
+
+    // Colliding bodies merge into one instead of bouncing when set. Bodies
+    // merged away during a step are flagged and removed at its end.
+    private boolean mergeCollisions = false;
+    private boolean[] merged = new boolean[0];
+
+    public SimulationEngine(boolean threeDimensional) {
+        this.threeDimensional = threeDimensional;
+        this.collisionGrid = new SpatialHashGrid(threeDimensional);
+    }
+
+    public void addBody(Body body) {
+        bodies.attach(body);
+        integrator.reset();
+    }
+
+    public void clear() {
+        bodies.clear();
+        integrator.reset();
+        stepCount = 0;
+    }
+
+    public void setBounds(int width, int height) {
+        this.boundsWidth = width;
+        this.boundsHeight = height;
+    }
+
+    public void step(double dt) {
+        collisionTimer.begin();
+        int collisions = resolveCollisions();
+        collisionTimer.end();
+        if (collisions > 0) {
+            integrator.reset();
+        }
+
+        physicsTimer.begin();
+        integrator.step(forces, bodies, dt);
+        physicsTimer.end();
+
+        int n = bodies.size();
+        for (int i = 0; i < n; i++) {
+            Body p = bodies.getView(i);
+            if (recordTrails) p.recordTrail();
+
+            if (boundsWidth > 0 && boundsHeight > 0) {
+                ((Planet2D) p).checkBorderCollision(boundsWidth, boundsHeight);
+            }
+        }
+
+        stepCount++;
+    }
+
+    // Resolves every overlapping pair, independently of the gravity solver.
+    // The grid narrows the search to bodies in neighbouring cells.
+    private int resolveCollisions() {
+        int n = bodies.size();
+        boolean merging = mergeCollisions;
+        if (merging) {
+            if (merged.length < n) merged = new boolean[bodies.getX().length];
+            Arrays.fill(merged, 0, n, false);
+        }
+
+        int count = collisionGrid.findCandidatePairs(bodies);
+        int[] pairs = collisionGrid.getPairs();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] radius = bodies.getRadius();
+        int resolved = 0;
+
+        for (int k = 0; k < count; k++) {
+            int i = pairs[2 * k];
+            int j = pairs[2 * k + 1];
+
+            double dx = x[j] - x[i];
+            double dy = y[j] - y[i];
+            double dz = z[j] - z[i];
+            double reach = radius[i] + radius[j];
+
+            if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+                if (!merging) {
+                    bodies.getView(i).resolveCollision(bodies.getView(j));
+                    resolved++;
+                } else if (!merged[i] && !merged[j]) {
+                    merge(i, j);
+                    resolved++;
+                }
+            }
+        }
+
+        if (merging && resolved > 0) {
+            // Highest index first, so the body swapped into a freed slot has
+            // not been merged away itself.
+            for (int i = n - 1; i >= 0; i--) {
+                if (merged[i]) bodies.swapRemove(i);
+            }
+        }
+        return resolved;
+    }
+
+    // Folds the lighter body into the heavier one, which keeps its view.
+    // Mass and momentum are conserved, the centre of mass carries on and
+    // the radius is that of the summed volumes.
+    private void merge(int i, int j) {
+        double[] mass = bodies.getMass();
+        if (mass[j] > mass[i]) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+        double[] radius = bodies.getRadius();
+
+        double total = mass[i] + mass[j];
+        double wi = total > 0 ? mass[i] / total : 0.5;
+        double wj = 1 - wi;
+
+        x[i] = wi * x[i] + wj * x[j];
+        y[i] = wi * y[i] + wj * y[j];
+        z[i] = wi * z[i] + wj * z[j];
+        vx[i] = wi * vx[i] + wj * vx[j];
+        vy[i] = wi * vy[i] + wj * vy[j];
+        vz[i] = wi * vz[i] + wj * vz[j];
+        radius[i] = Math.cbrt(radius[i] * radius[i] * radius[i] + radius[j] * radius[j] * radius[j]);
+        mass[i] = total;
+        merged[j] = true;
+    }
+
+    // Runs nSteps and returns the achieved steps per second.
+    public double run(long nSteps, double dt) {
+        long start = System.nanoTime();
+        for (long i = 0; i < nSteps; i++) {
+            step(dt);
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed > 0 ? nSteps / (elapsed / 1e9) : 0;
+    }
+
+    // Kinetic plus potential energy in simulation units, O(n^2).
+    public double computeEnergy() {
+        int n = bodies.size();
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] vx = bodies.getVelocityX();
+        double[] vy = bodies.getVelocityY();
+        double[] vz = bodies.getVelocityZ();
+        double[] mass = bodies.getMass();
+
+        double kinetic = 0;
+        double potential = 0;
+        for (int i = 0; i < n; i++) {
+            kinetic += 0.5 * mass[i] * (vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]);
+
+            double sum = 0;
+            for (int j = i + 1; j < n; j++) {
+                double dx = x[j] - x[i];
+                double dy = y[j] - y[i];
+                double dz = z[j] - z[i];
+                sum += mass[j] / Math.sqrt(dx * dx + dy * dy + dz * dz);
+            }
+            potential -= g * mass[i] * sum;
+        }
+        return kinetic + potential;
+    }
+
+    public List<Body> getBodies() {
+        return bodies.getViews();
+    }
+
+    public boolean isRecordingTrails() {
+        return recordTrails;
+    }
+
+    public void setRecordTrails(boolean recordTrails) {
+        this.recordTrails = recordTrails;
+    }
+
+    public boolean isMergingCollisions() {
+        return mergeCollisions;
+    }
+
+    public void setMergeCollisions(boolean mergeCollisions) {
+        this.mergeCollisions = mergeCollisions;
+    }
+
+    public GravitySolver getSolver() {
+        return solver;
+    }
+
+    public void setSolver(GravitySolver solver) {
+        this.solver = solver;
+        integrator.reset();
+    }
+
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    public BodyStore getStore() {
+        return bodies;
+    }
+
+    public int getBodyCount() {
+        return bodies.size();
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public void setStepCount(long stepCount) {
+        this.stepCount = stepCount;
+    }
+
+    // Metres per screen unit, DISTANCE_SCALE unless changed.
+    public void setDistanceScale(double distanceScale) {
+        g = G / (distanceScale * distanceScale * distanceScale);
+        integrator.reset();
+    }
+
+    public double getScaledG() {
+        return g;
+    }
+
+    // Turns the phase timers off, e.g. for many small engines stepped at
+    // once, which would otherwise all update the same timing windows.
+    public void setTimed(boolean timed) {
+        physicsTimer = timed ? new PhaseTimer(Phase.PHYSICS) : PhaseTimer.DISABLED;
+        collisionTimer = timed ? new PhaseTimer(Phase.COLLISIONS) : PhaseTimer.DISABLED;
+    }
+
+    public long getInteractionCount() {
+        return interactions;
+    }
+
+    public boolean isThreeDimensional() {
+        return threeDimensional;
+    }
+}
@@ -0,0 +1,165 @@
+package com.xacobeu.Simulation;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+// Steps an engine on its own thread and publishes snapshots for the renderer.
+// The step rate is stepsPerFrame times the nominal display rate, so one
+// rendered frame shows stepsPerFrame steps regardless of how long it took.
+//
+// Other threads change the engine through execute(), which queues the
+// change for the simulation thread to apply between steps, so the step loop
+// never locks and never sees bodies change under it.
+public class SimulationRunner implements Runnable {
+    private static final double FRAME_RATE = 60.0;
+
+    // Longest time spent stepping before publishing a new snapshot.
+    private static final long PUBLISH_INTERVAL_NANOS = 8_000_000L;
+
+    private final SimulationEngine engine;
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private final CommandQueue commands = new CommandQueue();
+
+    private volatile boolean running = false;
+    private volatile int stepsPerFrame = 1;
+    private volatile double dt = 1.0;
+
+    // Appends every step while set. Only changed while stopped.
+    private TrajectoryRecorder recorder;
+
+    private Thread thread;
+
+    public SimulationRunner(SimulationEngine engine) {
+        this.engine = engine;
+        snapshots.publish(engine.getStore(), engine.getStepCount());
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Commands still queued are applied on the calling thread once the
+    // simulation thread has finished.
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (commands.drain(engine) > 0) publish();
+    }
+
+    // Applies command before the next step while running. While stopped
+    // there is no simulation thread, so it is applied at once on the calling
+    // thread, which must then be the one that starts and stops the runner.
+    public void execute(EngineCommand command) {
+        commands.submit(command);
+        if (!running && commands.drain(engine) > 0) publish();
+    }
+
+    // Publishes the current state, for changes made while stopped.
+    public void publish() {
+        snapshots.publish(engine.getStore(), engine.getStepCount());
+    }
+
+    @Override
+    public void run() {
+        long last = System.nanoTime();
+        double owed = 0;
+
+        while (running) {
+            if (commands.drain(engine) > 0) {
+                snapshots.publish(engine.getStore(), engine.getStepCount());
+            }
+
+            long now = System.nanoTime();
+            owed += (now - last) / 1e9 * FRAME_RATE * stepsPerFrame;
+            last = now;
+
+            if (owed < 1) {
+                LockSupport.parkNanos(500_000L);
+                continue;
+            }
+
+            // Catch up in batches, publishing at least every interval.
+            long batchStart = System.nanoTime();
+            while (owed >= 1 && running) {
+                commands.drain(engine);
+                engine.step(dt);
+                record();
+                owed--;
+                if (System.nanoTime() - batchStart > PUBLISH_INTERVAL_NANOS) break;
+            }
+            // Never build up more than a frame of backlog when stepping is too slow.
+            owed = Math.min(owed, stepsPerFrame);
+
+            snapshots.publish(engine.getStore(), engine.getStepCount());
+        }
+    }
+
+    private void record() {
+        if (recorder == null) return;
+
+        try {
+            recorder.record(engine.getStore(), engine.getStepCount());
+        } catch (IOException e) {
+            System.out.println("Recording stopped: " + e.getMessage());
+            closeRecorder();
+        }
+    }
+
+    private void closeRecorder() {
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.out.println("Could not close recording: " + e.getMessage());
+        }
+        recorder = null;
+    }
+
+    public TrajectoryRecorder getRecorder() {
+        return recorder;
+    }
+
+    // Replaces the recorder, closing the previous one. Call while stopped.
+    public void setRecorder(TrajectoryRecorder recorder) {
+        if (this.recorder != null) closeRecorder();
+        this.recorder = recorder;
+    }
+
+    public SnapshotBuffer getSnapshots() {
+        return snapshots;
+    }
+
+    public SimulationEngine getEngine() {
+        return engine;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getStepsPerFrame() {
+        return stepsPerFrame;
+    }
+
+    public void setStepsPerFrame(int stepsPerFrame) {
+        this.stepsPerFrame = Math.max(1, stepsPerFrame);
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public void setDt(double dt) {
+        this.dt = dt;
+    }
+}
@@ -0,0 +1,95 @@
+package com.xacobeu.Simulation;
+
+import java.util.Arrays;
+
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.BodyStore;
+
+// Copy of the drawable body state at one step. Snapshots are recycled by
+// SnapshotBuffer, so readers must not keep references to the arrays.
+public class Snapshot {
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] z = new double[0];
+    private double[] radius = new double[0];
+    private Body[] bodies = new Body[0];
+    private int count = 0;
+
+    private long step = -1;
+    private long sequence = 0;
+
+    void copyFrom(BodyStore store, long step) {
+        int n = store.size();
+        ensureCapacity(n);
+
+        System.arraycopy(store.getX(), 0, x, 0, n);
+        System.arraycopy(store.getY(), 0, y, 0, n);
+        System.arraycopy(store.getZ(), 0, z, 0, n);
+        System.arraycopy(store.getRadius(), 0, radius, 0, n);
+        for (int i = 0; i < n; i++) {
+            bodies[i] = store.getView(i);
+        }
+        if (count > n) Arrays.fill(bodies, n, count, null);
+
+        this.count = n;
+        this.step = step;
+    }
+
+    // Sets the bodies of a frame whose arrays the caller fills in, e.g. from
+    // a recorded trajectory.
+    void setFrame(Body[] views, int n, long step) {
+        ensureCapacity(n);
+        System.arraycopy(views, 0, bodies, 0, n);
+        if (count > n) Arrays.fill(bodies, n, count, null);
+
+        this.count = n;
+        this.step = step;
+    }
+
+    private void ensureCapacity(int n) {
+        if (x.length >= n) return;
+
+        int capacity = Math.max(n, x.length * 2);
+        x = new double[capacity];
+        y = new double[capacity];
+        z = new double[capacity];
+        radius = new double[capacity];
+        bodies = new Body[capacity];
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public double[] getRadius() {
+        return radius;
+    }
+
+    public Body[] getBodies() {
+        return bodies;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getStep() {
+        return step;
+    }
+}
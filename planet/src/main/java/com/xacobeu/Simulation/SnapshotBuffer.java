@@ -0,0 +1,30 @@
+package com.xacobeu.Simulation;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Lock-free triple buffer between one writer (physics) and one reader
+// (renderer). Each side owns one snapshot and they trade through the middle
+// slot, so neither ever waits for the other or sees a half-written state.
+public class SnapshotBuffer {
+    private final AtomicReference<Snapshot> middle = new AtomicReference<>(new Snapshot());
+    private Snapshot back = new Snapshot();
+    private Snapshot front = new Snapshot();
+    private long sequence = 0;
+
+    // Writer side.
+    public void publish(BodyStore store, long step) {
+        back.copyFrom(store, step);
+        back.setSequence(++sequence);
+        back = middle.getAndSet(back);
+    }
+
+    // Reader side, returns the newest published snapshot.
+    public Snapshot acquire() {
+        if (middle.get().getSequence() > front.getSequence()) {
+            front = middle.getAndSet(front);
+        }
+        return front;
+    }
+}
@@ -0,0 +1,278 @@
+package com.xacobeu.Simulation;
+
+import java.util.Arrays;
+
+import com.xacobeu.Bodies.BodyStore;
+
+// Uniform grid broad phase for collisions. Bodies are bucketed by cell with a
+// counting sort over a hash of the cell coordinates. With the cell size at
+// twice the largest radius, any overlapping pair sits in the same or an
+// adjacent cell, so only neighbouring cells need to be checked.
+//
+// So that a few large bodies, like a sun among planets, do not set the cell
+// size for everyone, bodies are split into levels by size, each with its own
+// grid: a level takes the remaining bodies up to OVERSIZED times their mean
+// radius. Pairs within a level come from neighbouring cells. A body checks
+// smaller levels only in the cells its extent covers, and only its actual
+// overlaps with them are kept.
+public class SpatialHashGrid {
+    // Radius over the mean of the remaining bodies that starts a new level.
+    private static final double OVERSIZED = 4.0;
+    private static final int MAX_LEVELS = 8;
+
+    // Largest pair array, two entries per pair.
+    private static final int MAX_PAIR_ENTRIES = Integer.MAX_VALUE - 8 & ~1;
+
+    private final boolean threeDimensional;
+
+    private final Level[] levels = new Level[MAX_LEVELS];
+    private int levelCount = 0;
+    private int[] levelOf = new int[0];
+
+    // Candidate pairs found by the last call, two entries per pair.
+    private int[] pairs = new int[64];
+    private int pairCount = 0;
+
+    private final int[] visited = new int[27];
+
+    // One grid of bodies of similar size.
+    private final class Level {
+        int[] members = new int[0];
+        int count;
+        double maxRadius;
+        double cellSize = 1;
+        int mask;
+
+        // Members sorted by bucket, bucket b spans [bucketStart[b], bucketStart[b + 1]).
+        int[] bucketStart = new int[2];
+        int[] sorted = new int[0];
+        int[] bucketOf = new int[0];
+
+        // Buckets already scanned by the current query, marked with stamp.
+        int[] scanned = new int[0];
+        int stamp = 0;
+
+        void build(double[] x, double[] y, double[] z) {
+            cellSize = maxRadius > 0 ? 2 * maxRadius : 1;
+            int buckets = Integer.highestOneBit(Math.max(2 * count - 1, 1)) << 1;
+            mask = buckets - 1;
+
+            if (bucketStart.length < buckets + 1) {
+                bucketStart = new int[buckets + 1];
+                scanned = new int[buckets];
+                stamp = 0;
+            }
+            if (sorted.length < count) {
+                sorted = new int[count];
+                bucketOf = new int[count];
+            }
+            Arrays.fill(bucketStart, 0, buckets + 1, 0);
+
+            for (int k = 0; k < count; k++) {
+                int i = members[k];
+                int bucket = hash(cell(x[i]), cell(y[i]), cell(z[i]));
+                bucketOf[k] = bucket;
+                bucketStart[bucket + 1]++;
+            }
+            for (int b = 0; b < buckets; b++) {
+                bucketStart[b + 1] += bucketStart[b];
+            }
+
+            // Fill using bucketStart as a cursor, then shift it back.
+            for (int k = 0; k < count; k++) {
+                sorted[bucketStart[bucketOf[k]]++] = members[k];
+            }
+            for (int b = buckets; b > 0; b--) {
+                bucketStart[b] = bucketStart[b - 1];
+            }
+            bucketStart[0] = 0;
+        }
+
+        long cell(double value) {
+            return (long) Math.floor(value / cellSize);
+        }
+
+        int hash(long cx, long cy, long cz) {
+            long h = cx * 73856093L ^ cy * 19349663L ^ cz * 83492791L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    public SpatialHashGrid(boolean threeDimensional) {
+        this.threeDimensional = threeDimensional;
+    }
+
+    // Finds every pair (i, j), i < j, that may overlap.
+    public int findCandidatePairs(BodyStore bodies) {
+        int n = bodies.size();
+        pairCount = 0;
+        if (n < 2) return 0;
+
+        double[] x = bodies.getX();
+        double[] y = bodies.getY();
+        double[] z = bodies.getZ();
+        double[] radius = bodies.getRadius();
+
+        assignLevels(n, radius);
+        for (int l = 0; l < levelCount; l++) {
+            levels[l].build(x, y, z);
+        }
+
+        for (int l = 0; l < levelCount; l++) {
+            Level level = levels[l];
+            // Bodies without size cannot overlap their own level.
+            if (level.maxRadius > 0) {
+                findWithinLevel(level, x, y, z);
+            }
+            for (int k = 0; k < level.count; k++) {
+                int i = level.members[k];
+                for (int lower = 0; lower < l; lower++) {
+                    findInLevel(levels[lower], i, x, y, z, radius);
+                }
+            }
+        }
+
+        return pairCount;
+    }
+
+    // Each level takes the remaining bodies up to OVERSIZED times their mean
+    // radius, which always includes the smallest, and the last takes the rest.
+    private void assignLevels(int n, double[] radius) {
+        if (levelOf.length < n) levelOf = new int[n];
+        Arrays.fill(levelOf, 0, n, -1);
+        levelCount = 0;
+
+        int remaining = n;
+        while (remaining > 0) {
+            boolean last = levelCount == MAX_LEVELS - 1;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                if (levelOf[i] < 0) sum += radius[i];
+            }
+            double limit = OVERSIZED * sum / remaining;
+
+            if (levels[levelCount] == null) levels[levelCount] = new Level();
+            Level level = levels[levelCount];
+            if (level.members.length < remaining) level.members = new int[remaining];
+            level.count = 0;
+            level.maxRadius = 0;
+
+            for (int i = 0; i < n; i++) {
+                if (levelOf[i] >= 0 || (!last && radius[i] > limit)) continue;
+                levelOf[i] = levelCount;
+                level.members[level.count++] = i;
+                level.maxRadius = Math.max(level.maxRadius, radius[i]);
+            }
+            remaining -= level.count;
+            levelCount++;
+        }
+    }
+
+    private void findWithinLevel(Level level, double[] x, double[] y, double[] z) {
+        int range = threeDimensional ? 1 : 0;
+        for (int k = 0; k < level.count; k++) {
+            int i = level.members[k];
+            long cx = level.cell(x[i]);
+            long cy = level.cell(y[i]);
+            long cz = level.cell(z[i]);
+            int visitedCount = 0;
+
+            for (int ox = -1; ox <= 1; ox++) {
+                for (int oy = -1; oy <= 1; oy++) {
+                    for (int oz = -range; oz <= range; oz++) {
+                        int bucket = level.hash(cx + ox, cy + oy, cz + oz);
+
+                        // Different cells can share a bucket, only scan it once.
+                        boolean seen = false;
+                        for (int v = 0; v < visitedCount; v++) {
+                            if (visited[v] == bucket) {
+                                seen = true;
+                                break;
+                            }
+                        }
+                        if (seen) continue;
+                        visited[visitedCount++] = bucket;
+
+                        for (int s = level.bucketStart[bucket]; s < level.bucketStart[bucket + 1]; s++) {
+                            int j = level.sorted[s];
+                            if (j > i) addPair(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Adds the members of a smaller level that overlap body i, scanning the
+    // cells its extent covers, or the whole level when that is fewer buckets.
+    private void findInLevel(Level level, int i, double[] x, double[] y, double[] z, double[] radius) {
+        if (level.count == 0) return;
+
+        double reach = radius[i] + level.maxRadius;
+        long minX = level.cell(x[i] - reach), maxX = level.cell(x[i] + reach);
+        long minY = level.cell(y[i] - reach), maxY = level.cell(y[i] + reach);
+        long minZ = threeDimensional ? level.cell(z[i] - reach) : level.cell(z[i]);
+        long maxZ = threeDimensional ? level.cell(z[i] + reach) : minZ;
+
+        double cells = (double) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        if (cells >= level.mask + 1) {
+            for (int k = 0; k < level.count; k++) {
+                addIfOverlapping(i, level.members[k], x, y, z, radius);
+            }
+            return;
+        }
+
+        if (++level.stamp == 0) {
+            Arrays.fill(level.scanned, 0);
+            level.stamp = 1;
+        }
+        for (long cx = minX; cx <= maxX; cx++) {
+            for (long cy = minY; cy <= maxY; cy++) {
+                for (long cz = minZ; cz <= maxZ; cz++) {
+                    int bucket = level.hash(cx, cy, cz);
+                    if (level.scanned[bucket] == level.stamp) continue;
+                    level.scanned[bucket] = level.stamp;
+
+                    for (int s = level.bucketStart[bucket]; s < level.bucketStart[bucket + 1]; s++) {
+                        addIfOverlapping(i, level.sorted[s], x, y, z, radius);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addIfOverlapping(int i, int j, double[] x, double[] y, double[] z, double[] radius) {
+        double dx = x[j] - x[i];
+        double dy = y[j] - y[i];
+        double dz = z[j] - z[i];
+        double reach = radius[i] + radius[j];
+        if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+            addPair(Math.min(i, j), Math.max(i, j));
+        }
+    }
+
+    private void addPair(int i, int j) {
+        if (2 * (long) pairCount + 2 > pairs.length) {
+            if (pairs.length >= MAX_PAIR_ENTRIES) {
+                throw new IllegalStateException("Too many collision candidates: " + pairCount);
+            }
+            pairs = Arrays.copyOf(pairs, (int) Math.min(2L * pairs.length, MAX_PAIR_ENTRIES));
+        }
+        pairs[2 * pairCount] = i;
+        pairs[2 * pairCount + 1] = j;
+        pairCount++;
+    }
+
+    public int[] getPairs() {
+        return pairs;
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    // Cell size of the level holding the smallest bodies.
+    public double getCellSize() {
+        return levelCount > 0 ? levels[0].cellSize : 1;
+    }
+}
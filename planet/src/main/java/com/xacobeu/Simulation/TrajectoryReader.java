@@ -0,0 +1,149 @@
+package com.xacobeu.Simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+
+// Reads frames written by TrajectoryRecorder into snapshots, without any
+// physics. Frames can be read in any order; the index gives each frame's
+// chunk and offset, so seeking costs one binary search.
+public class TrajectoryReader implements Closeable {
+    private final Path directory;
+    private final int dimensions;
+
+    private final long[] steps;
+    private final int[] chunks;
+    private final long[] offsets;
+    private final int frameCount;
+
+    // Drawable bodies per descriptor generation.
+    private final Map<Integer, Body[]> bodies = new HashMap<>();
+
+    private final Snapshot snapshot = new Snapshot();
+    private MappedFile chunk;
+    private int chunkNumber = -1;
+
+    public TrajectoryReader(Path directory) throws IOException {
+        this.directory = directory;
+
+        try (MappedFile index = MappedFile.open(directory.resolve(TrajectoryRecorder.INDEX_FILE))) {
+            if (index.size() < TrajectoryRecorder.INDEX_HEADER_BYTES || index.getInt() != TrajectoryRecorder.MAGIC) {
+                throw new IOException("Not a trajectory recording");
+            }
+            int version = index.getInt();
+            if (version != TrajectoryRecorder.VERSION) {
+                throw new IOException("Unsupported trajectory version " + version);
+            }
+            dimensions = index.getInt();
+            if (dimensions != 2 && dimensions != 3) {
+                throw new IOException("Invalid trajectory dimensions " + dimensions);
+            }
+
+            // A partly written last entry is ignored.
+            long entries = index.remaining() / TrajectoryRecorder.INDEX_ENTRY_BYTES;
+            frameCount = (int) Math.min(entries, Integer.MAX_VALUE);
+            steps = new long[frameCount];
+            chunks = new int[frameCount];
+            offsets = new long[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                steps[i] = index.getLong();
+                chunks[i] = index.getInt();
+                offsets[i] = index.getLong();
+                // The generation is read from the frame itself.
+                index.skip(4);
+            }
+        }
+
+        readBodies(directory.resolve(TrajectoryRecorder.BODIES_FILE));
+    }
+
+    private void readBodies(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+
+        try (MappedFile file = MappedFile.open(path)) {
+            while (file.remaining() >= 8) {
+                int generation = file.getInt();
+                int n = file.getInt();
+                float[] colors = new float[n * 4];
+                file.getFloats(colors, 0, colors.length);
+                byte[] emissive = new byte[n];
+                file.getBytes(emissive, 0, n);
+
+                // Positions and radii come from each frame.
+                Body[] views = new Body[n];
+                for (int i = 0; i < n; i++) {
+                    float[] color = Arrays.copyOfRange(colors, i * 4, i * 4 + 4);
+                    views[i] = dimensions == 3
+                            ? new Planet3D(0, 0, 0, 0, 0, color, emissive[i] != 0)
+                            : new Planet2D(0, 0, 0, 0, color);
+                }
+                bodies.put(generation, views);
+            }
+        }
+    }
+
+    // Reads frame into a snapshot owned by the reader, valid until the next read.
+    public Snapshot read(int frame) throws IOException {
+        if (chunks[frame] != chunkNumber) {
+            if (chunk != null) chunk.close();
+            chunk = MappedFile.open(TrajectoryRecorder.chunkPath(directory, chunks[frame]));
+            chunkNumber = chunks[frame];
+        }
+
+        chunk.seek(offsets[frame]);
+        long step = chunk.getLong();
+        int generation = chunk.getInt();
+        Body[] views = bodies.get(generation);
+        if (views == null) {
+            throw new IOException("Missing body descriptors for generation " + generation);
+        }
+
+        int n = views.length;
+        snapshot.setFrame(views, n, step);
+        chunk.getDoubles(snapshot.getX(), 0, n);
+        chunk.getDoubles(snapshot.getY(), 0, n);
+        if (dimensions == 3) {
+            chunk.getDoubles(snapshot.getZ(), 0, n);
+        } else {
+            Arrays.fill(snapshot.getZ(), 0, n, 0);
+        }
+        chunk.getDoubles(snapshot.getRadius(), 0, n);
+        return snapshot;
+    }
+
+    // Last frame recorded at or before step, or 0 if there is none. Steps
+    // only increase within a recording, the window refuses Reset and Load
+    // while recording.
+    public int findFrame(long step) {
+        int found = Arrays.binarySearch(steps, 0, frameCount, step);
+        if (found >= 0) return found;
+        return Math.max(0, -found - 2);
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getStep(int frame) {
+        return steps[frame];
+    }
+
+    public boolean isThreeDimensional() {
+        return dimensions == 3;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (chunk != null) chunk.close();
+        chunk = null;
+        chunkNumber = -1;
+    }
+}
@@ -0,0 +1,177 @@
+package com.xacobeu.Simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.xacobeu.Colors;
+import com.xacobeu.Bodies.Body;
+import com.xacobeu.Bodies.BodyStore;
+import com.xacobeu.Bodies.Planet2D;
+import com.xacobeu.Bodies.Planet3D;
+
+// Appends per-step body states to a directory, for replay with
+// TrajectoryReader. Frames go to memory-mapped chunk files, created at a fixed
+// size and cut back to their frames when they are finished:
+//
+//   chunk-NNNNN.bin   frames: long step, int generation,
+//                     double x, y, (z,) radius [count each]
+//   bodies.bin        per generation: int generation, int count,
+//                     float color [count * 4], byte emissive [count]
+//   trajectory.idx    int magic, int version, int dimensions, then per frame:
+//                     long step, int chunk, long offset, int generation
+//
+// A new generation of body descriptors is written whenever the set of bodies
+// changes. Index entries are appended after their frame, so a reader never
+// sees a partly written frame. All values are little-endian.
+public class TrajectoryRecorder implements Closeable {
+    static final int MAGIC = 0x52545650; // "PVTR"
+    static final int VERSION = 1;
+    static final int INDEX_HEADER_BYTES = 12;
+    static final int INDEX_ENTRY_BYTES = 24;
+    static final int FRAME_HEADER_BYTES = 12;
+    static final long CHUNK_BYTES = 64L << 20;
+
+    static final String INDEX_FILE = "trajectory.idx";
+    static final String BODIES_FILE = "bodies.bin";
+
+    private final Path directory;
+    private final int dimensions;
+    private final FileChannel index;
+    private final FileChannel bodies;
+    private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private MappedFile chunk;
+    private int chunkNumber = -1;
+
+    // Bodies described by the current generation.
+    private Body[] described = new Body[0];
+    private int describedCount = -1;
+    private int generation = -1;
+
+    private long frames = 0;
+
+    public TrajectoryRecorder(Path directory, boolean threeDimensional) throws IOException {
+        this.directory = directory;
+        this.dimensions = threeDimensional ? 3 : 2;
+
+        Files.createDirectories(directory);
+        index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        bodies = FileChannel.open(directory.resolve(BODIES_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dimensions).flip();
+        writeFully(index, header);
+    }
+
+    public void record(BodyStore store, long step) throws IOException {
+        int n = store.size();
+        if (bodiesChanged(store)) {
+            describe(store);
+        }
+
+        long frameBytes = frameBytes(n, dimensions);
+        if (chunk == null || chunk.remaining() < frameBytes) {
+            nextChunk(frameBytes);
+        }
+
+        long offset = chunk.position();
+        chunk.putLong(step);
+        chunk.putInt(generation);
+        chunk.putDoubles(store.getX(), 0, n);
+        chunk.putDoubles(store.getY(), 0, n);
+        if (dimensions == 3) chunk.putDoubles(store.getZ(), 0, n);
+        chunk.putDoubles(store.getRadius(), 0, n);
+
+        entry.clear();
+        entry.putLong(step).putInt(chunkNumber).putLong(offset).putInt(generation).flip();
+        writeFully(index, entry);
+        frames++;
+    }
+
+    private boolean bodiesChanged(BodyStore store) {
+        int n = store.size();
+        if (n != describedCount) return true;
+        for (int i = 0; i < n; i++) {
+            if (store.getView(i) != described[i]) return true;
+        }
+        return false;
+    }
+
+    private void describe(BodyStore store) throws IOException {
+        int n = store.size();
+        generation++;
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + n * 17).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(generation).putInt(n);
+        for (int i = 0; i < n; i++) {
+            Body body = store.getView(i);
+            float[] color = body instanceof Planet2D ? ((Planet2D) body).getColor() : Colors.WHITE;
+            for (int c = 0; c < 4; c++) buffer.putFloat(color[c]);
+        }
+        for (int i = 0; i < n; i++) {
+            Body body = store.getView(i);
+            buffer.put((byte) (body instanceof Planet3D && ((Planet3D) body).isEmissive() ? 1 : 0));
+        }
+        buffer.flip();
+        writeFully(bodies, buffer);
+
+        if (described.length < n) described = new Body[n];
+        for (int i = 0; i < n; i++) {
+            described[i] = store.getView(i);
+        }
+        describedCount = n;
+    }
+
+    private void nextChunk(long frameBytes) throws IOException {
+        closeChunk();
+        chunkNumber++;
+        chunk = MappedFile.create(chunkPath(directory, chunkNumber), Math.max(CHUNK_BYTES, frameBytes));
+    }
+
+    private void closeChunk() throws IOException {
+        if (chunk == null) return;
+        try {
+            chunk.truncateToPosition();
+        } finally {
+            chunk.close();
+            chunk = null;
+        }
+    }
+
+    static long frameBytes(int count, int dimensions) {
+        return FRAME_HEADER_BYTES + (long) count * (dimensions + 1) * 8;
+    }
+
+    static Path chunkPath(Path directory, int chunk) {
+        return directory.resolve(String.format("chunk-%05d.bin", chunk));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChunk();
+        index.close();
+        bodies.close();
+    }
+}